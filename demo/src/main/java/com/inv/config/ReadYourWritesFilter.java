@@ -0,0 +1,84 @@
+package com.inv.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// read-your-writes เมื่อใช้ replica: request ที่เขียนข้อมูล (ไม่ใช่ GET/HEAD/OPTIONS) อ่านจาก primary ทั้ง request
+// และพนักงานคนนั้นจะอ่านจาก primary ต่ออีก app.datasource.replica.sticky-ms หลังเขียน (เผื่อ replica ยังตามไม่ทัน)
+// ต้องอยู่หลัง JwtFilter ใน SecurityFilterChain (ดู SecurityConfig)
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+    private static final int CLEANUP_THRESHOLD = 10000;
+
+    @Value("${app.datasource.replica.url:}")
+    private String replicaUrl;
+    @Value("${app.datasource.replica.sticky-ms:5000}")
+    private long stickyMs;
+
+    // staff_id -> เวลา (ms) ที่ยังต้องอ่านจาก primary
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    // เรียกจาก ReplicaRoutingDataSource บน thread ของ request
+    static boolean isPrimaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY_REQUIRED.get());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return replicaUrl.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String staffId = auth != null && auth.isAuthenticated() ? auth.getName() : null;
+        boolean write = !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()) || "OPTIONS".equals(request.getMethod()));
+
+        PRIMARY_REQUIRED.set(write || isSticky(staffId));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PRIMARY_REQUIRED.remove();
+            if (write && staffId != null) {
+                markSticky(staffId);
+            }
+        }
+    }
+
+    private boolean isSticky(String staffId) {
+        if (staffId == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(staffId);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            stickyUntil.remove(staffId, until);
+            return false;
+        }
+        return true;
+    }
+
+    private void markSticky(String staffId) {
+        long now = System.currentTimeMillis();
+        if (stickyUntil.size() >= CLEANUP_THRESHOLD) {
+            stickyUntil.values().removeIf(until -> until < now);
+        }
+        stickyUntil.put(staffId, now + stickyMs);
+    }
+}
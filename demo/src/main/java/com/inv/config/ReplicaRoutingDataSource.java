@@ -0,0 +1,21 @@
+package com.inv.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// เลือก connection ตาม transaction ปัจจุบัน: @Transactional(readOnly = true) ไป replica นอกนั้นไป primary
+// request ที่ต้องอ่านข้อมูลที่เพิ่งเขียน (ดู ReadYourWritesFilter) จะไป primary เสมอ
+// ต้องห่อด้วย LazyConnectionDataSourceProxy เพื่อให้เลือกตอนใช้ connection จริง (หลังตั้งค่า readOnly แล้ว)
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadYourWritesFilter.isPrimaryRequired()) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,10 @@
+package com.inv.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// เปิดใช้งาน @Scheduled สำหรับงานเบื้องหลัง (เช่น snapshot ยอดคงเหลือ)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
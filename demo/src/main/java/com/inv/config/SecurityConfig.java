@@ -1,7 +1,10 @@
 package com.inv.config;
 
+import com.inv.security.IdempotencyFilter;
 import com.inv.security.JwtFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -23,6 +26,26 @@ public class SecurityConfig {
 
     @Autowired
     private JwtFilter jwtFilter;
+    @Autowired
+    private IdempotencyFilter idempotencyFilter;
+    @Autowired
+    private ReadYourWritesFilter readYourWritesFilter;
+
+    // IdempotencyFilter ต้องทำงานหลัง JwtFilter ใน SecurityFilterChain เท่านั้น จึงปิดการลงทะเบียนเป็น servlet filter อัตโนมัติ
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilterRegistration(IdempotencyFilter filter) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    // ต้องรู้พนักงานที่ login จึงทำงานหลัง JwtFilter เช่นกัน
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilterRegistration(ReadYourWritesFilter filter) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
 
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -39,6 +62,7 @@ public class SecurityConfig {
         configuration.addAllowedOrigin("http://localhost:3000"); // React dev server
         configuration.addAllowedMethod("*"); // GET, POST, PUT, DELETE
         configuration.addAllowedHeader("*");
+        configuration.addExposedHeader("ETag"); // ให้หน้าเว็บอ่าน ETag เพื่อส่ง If-None-Match กลับมาได้
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -51,6 +75,9 @@ public class SecurityConfig {
         http.csrf(csrf -> csrf.disable())
                 .cors(withDefaults())
                 .authorizeHttpRequests(request -> request
+                        // async dispatch ของ response แบบ stream ผ่านการตรวจสิทธิ์ใน request แรกแล้ว
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Public endpoints
                         .requestMatchers("/register", "/login", "/test").permitAll()
 
@@ -62,6 +89,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/requests/pending").hasRole("FOREMAN")
                         .requestMatchers(HttpMethod.PUT, "/requests/{id}/approve").hasRole("FOREMAN")
                         .requestMatchers(HttpMethod.PUT, "/requests/{id}/reject").hasRole("FOREMAN")
+                        .requestMatchers(HttpMethod.PUT, "/requests/approve", "/requests/reject").hasRole("FOREMAN")
 
                         // Authenticated endpoints (สำหรับ role อื่นๆ หรือ role ร่วม)
                         .requestMatchers(HttpMethod.GET, "/orders/confirmed").hasAnyRole("TECHNICIAN", "ADMIN")
@@ -69,34 +97,46 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/requests/{requestId}/items").hasAnyRole("TECHNICIAN", "FOREMAN", "ADMIN")
 
                         // เพิ่ม Rule สำหรับ Warehouse
-                        .requestMatchers(HttpMethod.POST, "/stock/in").hasRole("WAREHOUSE")
+                        .requestMatchers(HttpMethod.POST, "/stock/in", "/stock/in/bulk").hasRole("WAREHOUSE")
+                        .requestMatchers(HttpMethod.GET, "/stock/low").hasAnyRole("WAREHOUSE", "ADMIN")
 
-                        .requestMatchers(HttpMethod.POST, "/customers").hasAnyRole("ADMIN", "SALES", "TECHNICIAN", "FOREMAN")
+                        .requestMatchers(HttpMethod.POST, "/customers", "/customers/import").hasAnyRole("ADMIN", "SALES", "TECHNICIAN", "FOREMAN")
 
-                        .requestMatchers(HttpMethod.POST, "/suppliers").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/suppliers", "/suppliers/import").authenticated()
 
                         .requestMatchers("/staff/**").hasRole("ADMIN")
 
                         // อนุญาตให้ warehouse สร้างสินค้าได้
-                        .requestMatchers(HttpMethod.POST, "/products").hasRole("WAREHOUSE")
+                        .requestMatchers(HttpMethod.POST, "/products", "/products/import").hasRole("WAREHOUSE")
+                        .requestMatchers(HttpMethod.GET, "/products/cache/stats").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.PUT, "/products/{id}/price").hasAnyRole("WAREHOUSE", "ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/stock/valuation").hasRole("ADMIN")
                         // อนุญาตให้ทุกคนที่ login แล้วดึงข้อมูล Category ได้
                         .requestMatchers(HttpMethod.GET, "/categories").authenticated()
 
                         // เพิ่ม: Rules สำหรับการปิด Request
                         .requestMatchers(HttpMethod.GET, "/requests/ready-to-close").hasRole("WAREHOUSE")
                         .requestMatchers(HttpMethod.PUT, "/requests/{id}/close").hasRole("WAREHOUSE")
+                        .requestMatchers(HttpMethod.POST, "/requests/auto-close").hasRole("ADMIN")
 
                         // เพิ่ม: Rules สำหรับการปิด Order โดย Sales
                         .requestMatchers(HttpMethod.GET, "/orders/ready-to-close").hasRole("SALES")
                         .requestMatchers(HttpMethod.PUT, "/orders/{orderId}/close").hasRole("SALES")
 
                         // เพิ่ม: Rules สำหรับ Endpoint ใหม่ (ให้ Admin เข้าถึงได้)
-                        .requestMatchers(HttpMethod.GET, "/staff", "/requests", "/orders", "/stock/transactions").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/staff", "/requests", "/orders", "/stock/transactions", "/stock/transactions/export").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/stock/snapshots").hasRole("ADMIN")
+                        .requestMatchers("/reports/**").hasRole("ADMIN")
+
+                        // SSE ของคิวงาน: กรองคิวตาม role ใน WorkQueueFeed
+                        .requestMatchers(HttpMethod.GET, "/events/queues").authenticated()
 
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(idempotencyFilter, JwtFilter.class)
+                .addFilterAfter(readYourWritesFilter, JwtFilter.class);
 
         return http.build();
     }
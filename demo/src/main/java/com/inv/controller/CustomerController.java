@@ -1,12 +1,18 @@
 package com.inv.controller;
 
+import com.inv.model.BulkResult;
 import com.inv.model.Customer;
+import com.inv.model.PageResult;
 import com.inv.service.CustomerService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 @RestController
 @RequestMapping("/customers")
@@ -15,9 +21,12 @@ public class CustomerController {
     @Autowired
     private CustomerService customerService;
 
+    // แบ่งหน้าแบบ keyset: sort = name (ค่าเริ่มต้น) หรือ id, ใส่ - นำหน้าเพื่อเรียงจากมากไปน้อย
     @GetMapping
-    public List<Customer> getAllCustomers() {
-        return customerService.getAllCustomers();
+    public PageResult<Customer> getCustomers(@RequestParam(required = false) String sort,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "50") int limit) {
+        return customerService.getCustomers(sort, cursor, limit);
     }
 
     @GetMapping("/{id}")
@@ -30,4 +39,12 @@ public class CustomerController {
         Customer newCustomer = customerService.createCustomer(customer);
         return ResponseEntity.ok(newCustomer);
     }
-}
\ No newline at end of file
+
+    // นำเข้าลูกค้าหลายรายการ: body เป็น CSV (text/csv) อ่านแบบ stream คืนผลรายบรรทัด
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public BulkResult importCustomers(HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            return customerService.importCustomers(reader);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.inv.controller;
+
+import com.inv.service.WorkQueueFeed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/events")
+public class EventController {
+
+    @Autowired
+    private WorkQueueFeed workQueueFeed;
+
+    // SSE: ส่ง event ชื่อเดียวกับคิว (pending-requests, approved-requests, ...) เมื่อรายการในคิวเปลี่ยน
+    @GetMapping(value = "/queues", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter queues(Authentication authentication) {
+        return workQueueFeed.subscribe(authentication);
+    }
+}
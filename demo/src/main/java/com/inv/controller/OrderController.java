@@ -2,10 +2,13 @@ package com.inv.controller;
 
 import com.inv.model.Order;
 import com.inv.model.OrderItem;
+import com.inv.model.PageResult;
 import com.inv.service.OrderService;
+import com.inv.service.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity; // Import เพิ่ม
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.security.Principal;
 import java.util.List;
@@ -16,10 +19,22 @@ public class OrderController {
 
     @Autowired
     private OrderService orderService;
+    @Autowired
+    private ResourceVersions resourceVersions;
 
+    // include=items: ส่งรายการสินค้าของทุก Order ในหน้านั้นมาในคำตอบเดียว
+    // แบ่งหน้าแบบ keyset: sort = -date (ค่าเริ่มต้น), date หรือ id
     @GetMapping
-    public List<Order> getAllOrders() {
-        return orderService.getAllOrders();
+    public PageResult<Order> getOrders(@RequestParam(defaultValue = "") String include,
+                                       @RequestParam(required = false) String sort,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(defaultValue = "50") int limit,
+                                       WebRequest webRequest) {
+        PageResult<Order> page = orderService.getOrders(sort, cursor, limit, "items".equals(include));
+        if (webRequest.checkNotModified(resourceVersions.contentEtag(ResourceVersions.ORDERS, page))) {
+            return null; // 304 Not Modified
+        }
+        return page;
     }
 
     @PostMapping
@@ -29,18 +44,27 @@ public class OrderController {
     }
 
     @GetMapping("/confirmed")
-    public List<Order> getConfirmedOrders() {
-        return orderService.getConfirmedOrders();
+    public List<Order> getConfirmedOrders(@RequestParam(defaultValue = "") String include, WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.ORDERS, "confirmed-" + include))) {
+            return null; // 304 Not Modified
+        }
+        return orderService.getConfirmedOrders("items".equals(include));
     }
 
     @GetMapping("/{orderId}/items")
-    public List<OrderItem> getOrderItems(@PathVariable String orderId) { // รับ String orderId
+    public List<OrderItem> getOrderItems(@PathVariable String orderId, WebRequest webRequest) { // รับ String orderId
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.ORDERS, "items-" + orderId))) {
+            return null; // 304 Not Modified
+        }
         return orderService.getItemsByOrderId(orderId);
     }
 
     @GetMapping("/ready-to-close")
-    public List<Order> getReadyToCloseOrders() {
-        return orderService.getOrdersReadyToClose();
+    public List<Order> getReadyToCloseOrders(@RequestParam(defaultValue = "") String include, WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.ORDERS, "ready-to-close-" + include))) {
+            return null; // 304 Not Modified
+        }
+        return orderService.getOrdersReadyToClose("items".equals(include));
     }
 
     @PutMapping("/{orderId}/close")
@@ -1,13 +1,30 @@
 package com.inv.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inv.model.CatalogStats;
+import com.inv.model.PageResult;
 import com.inv.model.Product;
 import com.inv.service.ProductService;
+import com.inv.service.ResourceVersions;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -16,20 +33,51 @@ public class ProductController {
 
     @Autowired
     private ProductService productService;
+    @Autowired
+    private ResourceVersions resourceVersions;
+    @Autowired
+    private ObjectMapper objectMapper;
 
+    // แบ่งหน้าแบบ keyset: sort = name (ค่าเริ่มต้น) หรือ id, ใส่ - นำหน้าเพื่อเรียงจากมากไปน้อย
+    // ETag เปลี่ยนเมื่อสินค้าใดๆ เปลี่ยน; client ส่ง If-None-Match มาจะได้ 304 ถ้าไม่มีอะไรเปลี่ยน
     @GetMapping
-    public List<Product> getAllProducts() {
-        return productService.getAllProducts();
+    public PageResult<Product> getProducts(@RequestParam(required = false) String sort,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "50") int limit,
+                                           WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.PRODUCTS, "list-" + sort + "-" + cursor + "-" + limit))) {
+            return null; // 304 Not Modified
+        }
+        return productService.getProducts(sort, cursor, limit);
+    }
+
+    // ค้นหาจากชื่อ รายละเอียด และรหัสผู้จำหน่าย (รองรับภาษาไทย/อังกฤษ) เรียงตามความตรง
+    @GetMapping("/search")
+    public List<Product> searchProducts(@RequestParam String q, @RequestParam(defaultValue = "20") int limit) {
+        return productService.searchProducts(q, limit);
+    }
+
+    @GetMapping("/cache/stats")
+    public CatalogStats getCacheStats() {
+        return productService.getCatalogStats();
     }
 
     @GetMapping("/{id}")
-    public Product getProductById(@PathVariable String id) { // รับ String id
+    public Product getProductById(@PathVariable String id, WebRequest webRequest) { // รับ String id
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.PRODUCTS, "id-" + id))) {
+            return null; // 304 Not Modified
+        }
         return productService.getProductById(id);
     }
 
     @PutMapping("/{id}/adjust")
-    public void adjustStock(@PathVariable String id, @RequestParam int diff) { // รับ String id
-        productService.adjustQuantity(id, diff);
+    public void adjustStock(@PathVariable String id, @RequestParam int diff, Principal principal) { // รับ String id
+        productService.adjustQuantity(id, diff, principal.getName());
+    }
+
+    @PutMapping("/{id}/price")
+    public void updatePrice(@PathVariable String id, @RequestParam BigDecimal price) {
+        productService.updatePrice(id, price);
     }
 
     @PostMapping
@@ -38,6 +86,33 @@ public class ProductController {
         return ResponseEntity.ok(newProduct);
     }
 
+    // นำเข้าแคตตาล็อกสินค้า: body เป็น CSV (text/csv) อ่านแบบ stream
+    // ตอบเป็น NDJSON หนึ่งบรรทัดต่อ chunk (ยอดสะสม + error ของ chunk นั้น) และบรรทัดสุดท้ายมี done = true
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<StreamingResponseBody> importProducts(HttpServletRequest request) {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+                productService.importProducts(reader, progress -> {
+                    try {
+                        writer.write(objectMapper.writeValueAsString(progress));
+                        writer.write('\n');
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
 //    @PostMapping("/products/{id}/image")
 //    public ResponseEntity<?> uploadProductImage(@PathVariable int id,
 //                                                @RequestParam("file") MultipartFile file) throws IOException {
@@ -0,0 +1,52 @@
+package com.inv.controller;
+
+import com.inv.model.MovementRollup;
+import com.inv.model.RollupBackfillResult;
+import com.inv.service.ReportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/reports")
+public class ReportController {
+
+    @Autowired
+    private ReportService reportService;
+
+    // ยอด IN/OUT/ADJUST ต่อสินค้าต่อวัน (key = productId) ในช่วง [from, to]
+    @GetMapping("/movements/products")
+    public List<MovementRollup> getProductMovements(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String productId) {
+        return reportService.getProductMovements(from, to, productId);
+    }
+
+    // ต่อพนักงานต่อวัน (key = staffId)
+    @GetMapping("/movements/staff")
+    public List<MovementRollup> getStaffMovements(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return reportService.getStaffMovements(from, to);
+    }
+
+    // ต่อผู้จำหน่ายของสินค้าต่อวัน (key = supplierId)
+    @GetMapping("/movements/suppliers")
+    public List<MovementRollup> getSupplierMovements(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return reportService.getSupplierMovements(from, to);
+    }
+
+    // สร้างยอด rollup ใหม่จาก ledger (ครั้งแรกหลังเพิ่มตาราง หรือเมื่อต้องการแก้ค่าคลาดเคลื่อน)
+    @PostMapping("/rollups/rebuild")
+    public RollupBackfillResult rebuildRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return reportService.backfill(from, to);
+    }
+}
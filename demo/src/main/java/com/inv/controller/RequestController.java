@@ -1,10 +1,16 @@
 package com.inv.controller;
 
+import com.inv.model.AutoCloseResult;
+import com.inv.model.PageResult;
 import com.inv.model.Request;
+import com.inv.model.RequestDecisionResult;
 import com.inv.model.RequestItem;
+import com.inv.service.AutoCloseService;
 import com.inv.service.RequestService;
+import com.inv.service.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.security.Principal;
 import java.util.List;
@@ -15,10 +21,24 @@ public class RequestController {
 
     @Autowired
     private RequestService requestService;
+    @Autowired
+    private AutoCloseService autoCloseService;
+    @Autowired
+    private ResourceVersions resourceVersions;
 
+    // include=items: ส่งรายการเบิกของทุก Request ในหน้านั้นมาในคำตอบเดียว
+    // แบ่งหน้าแบบ keyset: sort = -date (ค่าเริ่มต้น), date หรือ id
     @GetMapping
-    public List<Request> getAllRequests() {
-        return requestService.getAllRequests();
+    public PageResult<Request> getRequests(@RequestParam(defaultValue = "") String include,
+                                           @RequestParam(required = false) String sort,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "50") int limit,
+                                           WebRequest webRequest) {
+        PageResult<Request> page = requestService.getRequests(sort, cursor, limit, "items".equals(include));
+        if (webRequest.checkNotModified(resourceVersions.contentEtag(ResourceVersions.REQUESTS, page))) {
+            return null; // 304 Not Modified
+        }
+        return page;
     }
 
     @PostMapping
@@ -29,12 +49,18 @@ public class RequestController {
     }
 
     @GetMapping("/pending")
-    public List<Request> getPendingRequests() {
-        return requestService.getPendingRequests();
+    public List<Request> getPendingRequests(@RequestParam(defaultValue = "") String include, WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.REQUESTS, "pending-" + include))) {
+            return null; // 304 Not Modified
+        }
+        return requestService.getPendingRequests("items".equals(include));
     }
 
     @GetMapping("/{requestId}/items")
-    public List<RequestItem> getRequestItems(@PathVariable String requestId) { // รับ String
+    public List<RequestItem> getRequestItems(@PathVariable String requestId, WebRequest webRequest) { // รับ String
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.REQUESTS, "items-" + requestId))) {
+            return null; // 304 Not Modified
+        }
         return requestService.getItemsByRequestId(requestId);
     }
 
@@ -50,9 +76,31 @@ public class RequestController {
         requestService.rejectRequest(id, approverId);
     }
 
+    // อนุมัติ/ปฏิเสธหลายคำขอในครั้งเดียว: body คือรายการ request_id คืนผลแยกรายคำขอ
+    @PutMapping("/approve")
+    public RequestDecisionResult approveAll(@RequestBody List<String> requestIds, Principal principal) {
+        String approverId = principal.getName();
+        return requestService.approveRequests(requestIds, approverId);
+    }
+
+    @PutMapping("/reject")
+    public RequestDecisionResult rejectAll(@RequestBody List<String> requestIds, Principal principal) {
+        String approverId = principal.getName();
+        return requestService.rejectRequests(requestIds, approverId);
+    }
+
     @GetMapping("/ready-to-close")
-    public List<Request> getReadyToCloseRequests() {
-        return requestService.getReadyToCloseRequests();
+    public List<Request> getReadyToCloseRequests(@RequestParam(defaultValue = "") String include, WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.REQUESTS, "ready-to-close-" + include))) {
+            return null; // 304 Not Modified
+        }
+        return requestService.getReadyToCloseRequests("items".equals(include));
+    }
+
+    // ปิด Request และ Order ที่พร้อมปิดทั้งหมดทันที (ปกติทำโดย job ตามรอบ)
+    @PostMapping("/auto-close")
+    public AutoCloseResult autoClose() {
+        return autoCloseService.closeReady();
     }
 
     @PutMapping("/{id}/close")
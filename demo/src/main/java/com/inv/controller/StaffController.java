@@ -1,13 +1,12 @@
 package com.inv.controller;
 
+import com.inv.model.PageResult;
 import com.inv.model.Staff;
 import com.inv.service.StaffService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/staff")
 public class StaffController {
@@ -22,8 +21,11 @@ public class StaffController {
         return ResponseEntity.ok(createdStaff);
     }
 
+    // แบ่งหน้าแบบ keyset: sort = name (ค่าเริ่มต้น), role หรือ id, ใส่ - นำหน้าเพื่อเรียงจากมากไปน้อย
     @GetMapping
-    public List<Staff> getAllStaff() {
-        return staffService.getAllStaff();
+    public PageResult<Staff> getStaff(@RequestParam(required = false) String sort,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(defaultValue = "50") int limit) {
+        return staffService.getStaff(sort, cursor, limit);
     }
 }
\ No newline at end of file
@@ -1,12 +1,38 @@
 package com.inv.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inv.model.BulkResult;
+import com.inv.model.InventoryValuation;
+import com.inv.model.LowStockItem;
+import com.inv.model.PageResult;
 import com.inv.model.Request;
+import com.inv.model.StockLevel;
 import com.inv.model.StockTransaction;
+import com.inv.model.StockTransactionFilter;
+import com.inv.service.ResourceVersions;
 import com.inv.service.StockService;
+import com.inv.service.StockSnapshotService;
+import com.inv.util.CsvReader;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,10 +43,118 @@ public class StockController {
     @Autowired
     private StockService stockService;
 
+    @Autowired
+    private StockSnapshotService stockSnapshotService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
 
+    // แบ่งหน้าแบบ keyset: ส่ง nextCursor ของหน้าก่อนกลับมาใน cursor เพื่อดึงหน้าถัดไป
     @GetMapping("/transactions")
-    public List<StockTransaction> getAllTransactions() {
-        return stockService.getAllTransactions();
+    public PageResult<StockTransaction> getTransactions(
+            @RequestParam(required = false) String productId,
+            @RequestParam(required = false) String staffId,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String cursor) {
+        return stockService.getTransactions(buildFilter(productId, staffId, type, from, to), limit, cursor);
+    }
+
+    // ส่งออก ledger ทั้งหมดตามเงื่อนไขแบบ stream (format=ndjson หรือ csv) โดยใช้ memory คงที่
+    @GetMapping("/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(required = false) String productId,
+            @RequestParam(required = false) String staffId,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        StockTransactionFilter filter = buildFilter(productId, staffId, type, from, to);
+        boolean csv = "csv".equalsIgnoreCase(format);
+
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (csv) {
+                writer.write("transaction_id,transaction_date,type,product_id,quantity,staff_id,description\n");
+            }
+            try {
+                stockService.streamTransactions(filter, tx -> {
+                    try {
+                        if (csv) {
+                            writer.write(String.join(",",
+                                    CsvReader.escape(tx.getTransactionId()),
+                                    tx.getTransactionDate().toString(),
+                                    CsvReader.escape(tx.getType()),
+                                    CsvReader.escape(tx.getProductId()),
+                                    String.valueOf(tx.getQuantity()),
+                                    CsvReader.escape(tx.getStaffId()),
+                                    CsvReader.escape(tx.getDescription())));
+                        } else {
+                            writer.write(objectMapper.writeValueAsString(tx));
+                        }
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv;charset=UTF-8") : MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/available/{productId}")
+    public Map<String, Object> getAvailability(@PathVariable String productId) {
+        return stockService.getAvailability(productId);
+    }
+
+    // สินค้าที่ใกล้หมด เรียงจากจำนวนวันที่เหลือน้อยที่สุด (แจ้งเตือนแบบ push ผ่านคิว low-stock ของ /events/queues)
+    @GetMapping("/low")
+    public List<LowStockItem> getLowStock() {
+        return stockService.getLowStock();
+    }
+
+    // มูลค่าสินค้าคงคลังรวมและแยกตามผู้จำหน่าย (ไม่ต้องอ่านตาราง product ทุกครั้ง)
+    @GetMapping("/valuation")
+    public InventoryValuation getValuation() {
+        return stockService.getValuation();
+    }
+
+    // --- ยอดคงเหลือย้อนหลัง ---
+    @GetMapping("/history/{productId}")
+    public StockLevel getStockAt(@PathVariable String productId,
+                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return stockSnapshotService.getQuantityAt(productId, at);
+    }
+
+    @GetMapping("/history")
+    public List<StockLevel> getCatalogueStockAt(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return stockSnapshotService.getQuantitiesAt(at);
+    }
+
+    @PostMapping("/snapshots")
+    public Map<String, LocalDateTime> takeSnapshot() {
+        return Map.of("snapshotAt", stockSnapshotService.takeSnapshot());
+    }
+
+    private StockTransactionFilter buildFilter(String productId, String staffId, String type, LocalDateTime from, LocalDateTime to) {
+        StockTransactionFilter filter = new StockTransactionFilter();
+        filter.setProductId(productId);
+        filter.setStaffId(staffId);
+        filter.setType(type);
+        filter.setFrom(from);
+        filter.setTo(to);
+        return filter;
     }
 
     @PostMapping("/in")
@@ -37,10 +171,23 @@ public class StockController {
         );
     }
 
+    // รับสินค้าทั้งใบส่งของ: body เป็น CSV (text/csv) หรือ NDJSON (application/x-ndjson) อ่านแบบ stream
+    @PostMapping(value = "/in/bulk", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public BulkResult addStockInBulk(HttpServletRequest request, Principal principal) throws IOException {
+        String staffId = principal.getName();
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(request.getContentType()));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            return stockService.addStockInBulk(reader, ndjson, staffId);
+        }
+    }
+
     // --- Fulfillment / Stock-Out ---
     @GetMapping("/approved-requests")
-    public List<Request> getApprovedRequests() {
-        return stockService.getApprovedRequests();
+    public List<Request> getApprovedRequests(@RequestParam(defaultValue = "") String include, WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.etag(ResourceVersions.REQUESTS, "approved-" + include))) {
+            return null; // 304 Not Modified
+        }
+        return stockService.getApprovedRequests("items".equals(include));
     }
 
     @PostMapping("/fulfill")
@@ -50,6 +197,18 @@ public class StockController {
         stockService.fulfillItem(request.getRequestItemId(), request.getFulfillQty(), warehouseStaffId);
     }
 
+    // เบิกหลายรายการใน request เดียว: body เป็น array ของ FulfillRequest
+    @PostMapping("/fulfill/batch")
+    public void fulfillItems(@RequestBody List<FulfillRequest> requests, Principal principal) {
+        String warehouseStaffId = principal.getName();
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (FulfillRequest request : requests) {
+            // รวมจำนวนกรณีส่ง requestItemId ซ้ำมาใน batch เดียวกัน
+            quantities.merge(request.getRequestItemId(), request.getFulfillQty(), Integer::sum);
+        }
+        stockService.fulfillItems(quantities, warehouseStaffId);
+    }
+
     // Inner class สำหรับรับ JSON request ของการเบิกของ
     public static class FulfillRequest {
         private String requestItemId; // แก้เป็น String
@@ -1,12 +1,18 @@
 package com.inv.controller;
 
+import com.inv.model.BulkResult;
+import com.inv.model.PageResult;
 import com.inv.model.Supplier;
 import com.inv.service.SupplierService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 @RestController
 @RequestMapping("/suppliers")
@@ -15,9 +21,12 @@ public class SupplierController {
     @Autowired
     private SupplierService supplierService;
 
+    // แบ่งหน้าแบบ keyset: sort = name (ค่าเริ่มต้น) หรือ id, ใส่ - นำหน้าเพื่อเรียงจากมากไปน้อย
     @GetMapping
-    public List<Supplier> getAllSuppliers() {
-        return supplierService.getAllSuppliers();
+    public PageResult<Supplier> getSuppliers(@RequestParam(required = false) String sort,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "50") int limit) {
+        return supplierService.getSuppliers(sort, cursor, limit);
     }
 
     @GetMapping("/{id}")
@@ -30,4 +39,18 @@ public class SupplierController {
         Supplier newSupplier = supplierService.createSupplier(supplier);
         return ResponseEntity.ok(newSupplier);
     }
-}
\ No newline at end of file
+
+    // ระยะเวลาส่งของ (วัน) สำหรับคำนวณจุดสั่งซื้อซ้ำ; ไม่ส่ง days = ใช้ค่าเริ่มต้นของระบบ
+    @PutMapping("/{id}/lead-time")
+    public void updateLeadTime(@PathVariable String id, @RequestParam(required = false) Integer days) {
+        supplierService.updateLeadTime(id, days);
+    }
+
+    // นำเข้าผู้จำหน่ายหลายรายการ: body เป็น CSV (text/csv) อ่านแบบ stream คืนผลรายบรรทัด
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public BulkResult importSuppliers(HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            return supplierService.importSuppliers(reader);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.inv.event;
+
+import java.math.BigDecimal;
+
+// แจ้งว่าราคาต่อหน่วยของสินค้าเปลี่ยน
+// listener ควรใช้ @TransactionalEventListener เพื่อรับหลัง commit เท่านั้น
+public class ProductPriceChangedEvent {
+    private final String productId;
+    private final BigDecimal pricePerUnit;
+
+    public ProductPriceChangedEvent(String productId, BigDecimal pricePerUnit) {
+        this.productId = productId;
+        this.pricePerUnit = pricePerUnit;
+    }
+
+    public String getProductId() { return productId; }
+
+    public BigDecimal getPricePerUnit() { return pricePerUnit; }
+}
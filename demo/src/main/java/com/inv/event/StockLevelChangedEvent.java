@@ -0,0 +1,22 @@
+package com.inv.event;
+
+// แจ้งว่าจำนวนคงเหลือของสินค้าเปลี่ยน (delta บวก = รับเข้า, ลบ = เบิกออก)
+// listener ควรใช้ @TransactionalEventListener เพื่อรับหลัง commit เท่านั้น
+// txId คือ xid ของ transaction ที่เปลี่ยนยอด: cache ที่โหลดจาก database ใช้ตัดการเปลี่ยนแปลงที่ snapshot ของตนเห็นแล้ว (ดู DbSnapshot)
+public class StockLevelChangedEvent {
+    private final String productId;
+    private final int delta;
+    private final long txId;
+
+    public StockLevelChangedEvent(String productId, int delta, long txId) {
+        this.productId = productId;
+        this.delta = delta;
+        this.txId = txId;
+    }
+
+    public String getProductId() { return productId; }
+
+    public int getDelta() { return delta; }
+
+    public long getTxId() { return txId; }
+}
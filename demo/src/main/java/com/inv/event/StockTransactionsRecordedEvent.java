@@ -0,0 +1,22 @@
+package com.inv.event;
+
+import com.inv.model.StockTransaction;
+
+import java.util.List;
+
+// แจ้งว่ามีการบันทึก StockTransaction ใหม่ (ส่งจาก LedgerWriter จุดเดียว)
+// listener ควรใช้ @TransactionalEventListener เพื่อรับหลัง commit เท่านั้น
+// txId คือ xid ของ transaction ที่บันทึก: cache ที่โหลดจาก database ใช้ตัดรายการที่ snapshot ของตนเห็นแล้ว (ดู DbSnapshot)
+public class StockTransactionsRecordedEvent {
+    private final List<StockTransaction> transactions;
+    private final long txId;
+
+    public StockTransactionsRecordedEvent(List<StockTransaction> transactions, long txId) {
+        this.transactions = transactions;
+        this.txId = txId;
+    }
+
+    public List<StockTransaction> getTransactions() { return transactions; }
+
+    public long getTxId() { return txId; }
+}
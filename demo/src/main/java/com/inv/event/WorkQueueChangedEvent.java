@@ -0,0 +1,34 @@
+package com.inv.event;
+
+// แจ้งว่ารายการในคิวงานเปลี่ยน เพื่อส่งต่อให้หน้าจอที่เปิดอยู่แทนการ poll
+// listener ควรใช้ @TransactionalEventListener เพื่อรับหลัง commit เท่านั้น
+public class WorkQueueChangedEvent {
+
+    // ชื่อคิว ตรงกับ endpoint ที่หน้าจอเคย poll
+    public static final String PENDING_REQUESTS = "pending-requests";               // GET /requests/pending
+    public static final String APPROVED_REQUESTS = "approved-requests";             // GET /stock/approved-requests
+    public static final String READY_TO_CLOSE_REQUESTS = "ready-to-close-requests"; // GET /requests/ready-to-close
+    public static final String READY_TO_CLOSE_ORDERS = "ready-to-close-orders";     // GET /orders/ready-to-close
+    public static final String LOW_STOCK = "low-stock";                             // GET /stock/low
+
+    // ADDED = เข้าคิว, REMOVED = ออกจากคิว, CHANGED = ข้อมูลเปลี่ยน (ควรโหลดรายการนั้นใหม่)
+    public static final String ADDED = "ADDED";
+    public static final String REMOVED = "REMOVED";
+    public static final String CHANGED = "CHANGED";
+
+    private final String queue;
+    private final String action;
+    private final String id;
+
+    public WorkQueueChangedEvent(String queue, String action, String id) {
+        this.queue = queue;
+        this.action = action;
+        this.id = id;
+    }
+
+    public String getQueue() { return queue; }
+
+    public String getAction() { return action; }
+
+    public String getId() { return id; }
+}
@@ -0,0 +1,22 @@
+package com.inv.model;
+
+// จำนวน Request และ Order ที่ถูกปิดอัตโนมัติในรอบเดียว
+public class AutoCloseResult {
+    private int requestsClosed;
+    private int ordersClosed;
+
+    public AutoCloseResult() {
+    }
+
+    public AutoCloseResult(int requestsClosed, int ordersClosed) {
+        this.requestsClosed = requestsClosed;
+        this.ordersClosed = ordersClosed;
+    }
+
+    // --- Getters and Setters ---
+    public int getRequestsClosed() { return requestsClosed; }
+    public void setRequestsClosed(int requestsClosed) { this.requestsClosed = requestsClosed; }
+
+    public int getOrdersClosed() { return ordersClosed; }
+    public void setOrdersClosed(int ordersClosed) { this.ordersClosed = ordersClosed; }
+}
@@ -0,0 +1,55 @@
+package com.inv.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// สรุปผลการนำเข้าแบบหลายบรรทัด: จำนวนที่สำเร็จ/ไม่สำเร็จ และ error รายบรรทัด
+public class BulkResult {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<RowError> errors = new ArrayList<>();
+
+    public void success() {
+        total++;
+        succeeded++;
+    }
+
+    public void error(int line, String message) {
+        total++;
+        failed++;
+        errors.add(new RowError(line, message));
+    }
+
+    // --- Getters and Setters ---
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+
+    public int getSucceeded() { return succeeded; }
+    public void setSucceeded(int succeeded) { this.succeeded = succeeded; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public List<RowError> getErrors() { return errors; }
+    public void setErrors(List<RowError> errors) { this.errors = errors; }
+
+    public static class RowError {
+        private int line;
+        private String message;
+
+        public RowError() {
+        }
+
+        public RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() { return line; }
+        public void setLine(int line) { this.line = line; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+    }
+}
@@ -0,0 +1,40 @@
+package com.inv.model;
+
+import java.time.LocalDateTime;
+
+// ตัวชี้วัดของ cache รายการสินค้า
+public class CatalogStats {
+    private boolean enabled;
+    private int size;
+    private int maxSize;
+    private long hits;
+    private long misses;
+    private long loads;
+    private long updates;
+    private LocalDateTime loadedAt;
+
+    // --- Getters and Setters ---
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+
+    public int getMaxSize() { return maxSize; }
+    public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+
+    public long getHits() { return hits; }
+    public void setHits(long hits) { this.hits = hits; }
+
+    public long getMisses() { return misses; }
+    public void setMisses(long misses) { this.misses = misses; }
+
+    public long getLoads() { return loads; }
+    public void setLoads(long loads) { this.loads = loads; }
+
+    public long getUpdates() { return updates; }
+    public void setUpdates(long updates) { this.updates = updates; }
+
+    public LocalDateTime getLoadedAt() { return loadedAt; }
+    public void setLoadedAt(LocalDateTime loadedAt) { this.loadedAt = loadedAt; }
+}
@@ -0,0 +1,47 @@
+package com.inv.model;
+
+// response ที่บันทึกไว้ของ request ที่มี Idempotency-Key (completed = false คือกำลังประมวลผลอยู่)
+public class IdempotencyRecord {
+    private String method;
+    private String path;
+    private String requestHash;
+    private boolean completed;
+    private int status;
+    private String contentType;
+    private byte[] body;
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String method, String path, String requestHash, int status, String contentType, byte[] body) {
+        this.method = method;
+        this.path = path;
+        this.requestHash = requestHash;
+        this.completed = true;
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    // --- Getters and Setters ---
+    public String getMethod() { return method; }
+    public void setMethod(String method) { this.method = method; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public String getRequestHash() { return requestHash; }
+    public void setRequestHash(String requestHash) { this.requestHash = requestHash; }
+
+    public boolean isCompleted() { return completed; }
+    public void setCompleted(boolean completed) { this.completed = completed; }
+
+    public int getStatus() { return status; }
+    public void setStatus(int status) { this.status = status; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public byte[] getBody() { return body; }
+    public void setBody(byte[] body) { this.body = body; }
+}
@@ -0,0 +1,37 @@
+package com.inv.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// ความคืบหน้าของการนำเข้าแบบหลาย chunk: ยอดสะสมทั้งหมด และ error เฉพาะของ chunk ล่าสุด
+public class ImportProgress {
+    private int processed;
+    private int succeeded;
+    private int failed;
+    private boolean done;
+    private List<BulkResult.RowError> errors = new ArrayList<>();
+
+    // รวมผลของ chunk ที่เพิ่งเสร็จ (error ของ chunk ก่อนหน้าไม่ถูกเก็บไว้)
+    public void add(BulkResult chunk) {
+        processed += chunk.getTotal();
+        succeeded += chunk.getSucceeded();
+        failed += chunk.getFailed();
+        errors = chunk.getErrors();
+    }
+
+    // --- Getters and Setters ---
+    public int getProcessed() { return processed; }
+    public void setProcessed(int processed) { this.processed = processed; }
+
+    public int getSucceeded() { return succeeded; }
+    public void setSucceeded(int succeeded) { this.succeeded = succeeded; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public boolean isDone() { return done; }
+    public void setDone(boolean done) { this.done = done; }
+
+    public List<BulkResult.RowError> getErrors() { return errors; }
+    public void setErrors(List<BulkResult.RowError> errors) { this.errors = errors; }
+}
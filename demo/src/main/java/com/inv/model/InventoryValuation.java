@@ -0,0 +1,42 @@
+package com.inv.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// มูลค่าสินค้าคงคลัง (quantity x price_per_unit) รวมทั้งหมดและแยกตามผู้จำหน่าย
+public class InventoryValuation {
+    private BigDecimal totalValue;
+    private List<SupplierValue> suppliers = new ArrayList<>();
+    private LocalDateTime reconciledAt; // เวลาที่คำนวณใหม่ทั้งหมดจาก database ล่าสุด
+
+    // --- Getters and Setters ---
+    public BigDecimal getTotalValue() { return totalValue; }
+    public void setTotalValue(BigDecimal totalValue) { this.totalValue = totalValue; }
+
+    public List<SupplierValue> getSuppliers() { return suppliers; }
+    public void setSuppliers(List<SupplierValue> suppliers) { this.suppliers = suppliers; }
+
+    public LocalDateTime getReconciledAt() { return reconciledAt; }
+    public void setReconciledAt(LocalDateTime reconciledAt) { this.reconciledAt = reconciledAt; }
+
+    public static class SupplierValue {
+        private String supplierId; // null = สินค้าที่ไม่ระบุผู้จำหน่าย
+        private BigDecimal value;
+
+        public SupplierValue() {
+        }
+
+        public SupplierValue(String supplierId, BigDecimal value) {
+            this.supplierId = supplierId;
+            this.value = value;
+        }
+
+        public String getSupplierId() { return supplierId; }
+        public void setSupplierId(String supplierId) { this.supplierId = supplierId; }
+
+        public BigDecimal getValue() { return value; }
+        public void setValue(BigDecimal value) { this.value = value; }
+    }
+}
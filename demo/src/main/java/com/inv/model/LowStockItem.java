@@ -0,0 +1,38 @@
+package com.inv.model;
+
+// สินค้าที่ยอดที่ใช้ได้ต่ำกว่าจุดสั่งซื้อซ้ำ
+public class LowStockItem {
+    private String productId;
+    private String productName;
+    private String supplierId;
+    private int available;
+    private double dailyUsage;  // ยอดเบิกออกเฉลี่ยต่อวันใน window
+    private int leadTimeDays;
+    private int reorderPoint;
+    private double daysOfCover; // จำนวนวันที่ของที่มีอยู่พอใช้ตามอัตราปัจจุบัน
+
+    // --- Getters and Setters ---
+    public String getProductId() { return productId; }
+    public void setProductId(String productId) { this.productId = productId; }
+
+    public String getProductName() { return productName; }
+    public void setProductName(String productName) { this.productName = productName; }
+
+    public String getSupplierId() { return supplierId; }
+    public void setSupplierId(String supplierId) { this.supplierId = supplierId; }
+
+    public int getAvailable() { return available; }
+    public void setAvailable(int available) { this.available = available; }
+
+    public double getDailyUsage() { return dailyUsage; }
+    public void setDailyUsage(double dailyUsage) { this.dailyUsage = dailyUsage; }
+
+    public int getLeadTimeDays() { return leadTimeDays; }
+    public void setLeadTimeDays(int leadTimeDays) { this.leadTimeDays = leadTimeDays; }
+
+    public int getReorderPoint() { return reorderPoint; }
+    public void setReorderPoint(int reorderPoint) { this.reorderPoint = reorderPoint; }
+
+    public double getDaysOfCover() { return daysOfCover; }
+    public void setDaysOfCover(double daysOfCover) { this.daysOfCover = daysOfCover; }
+}
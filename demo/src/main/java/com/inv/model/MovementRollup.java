@@ -0,0 +1,28 @@
+package com.inv.model;
+
+import java.time.LocalDate;
+
+// ยอดเคลื่อนไหวรวมต่อวัน; key คือรหัสตามมุมมองของรายงาน (สินค้า พนักงาน หรือผู้จำหน่าย)
+public class MovementRollup {
+    private LocalDate day;
+    private String key;
+    private String type;
+    private long quantity;
+    private int transactionCount;
+
+    // --- Getters and Setters ---
+    public LocalDate getDay() { return day; }
+    public void setDay(LocalDate day) { this.day = day; }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public long getQuantity() { return quantity; }
+    public void setQuantity(long quantity) { this.quantity = quantity; }
+
+    public int getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(int transactionCount) { this.transactionCount = transactionCount; }
+}
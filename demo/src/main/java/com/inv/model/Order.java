@@ -12,6 +12,8 @@ public class Order {
     private String status;
     private String customerId; // แก้เป็น String
     private String staffId;    // แก้เป็น String
+    private int openItems;     // จำนวนรายการที่ยังส่งไม่ครบ
+    private int openRequests;  // จำนวนคำขอเบิกที่ยังไม่ปิด
     private List<OrderItem> items;
 
 
@@ -36,6 +38,12 @@ public class Order {
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
+    public int getOpenItems() { return openItems; }
+    public void setOpenItems(int openItems) { this.openItems = openItems; }
+
+    public int getOpenRequests() { return openRequests; }
+    public void setOpenRequests(int openRequests) { this.openRequests = openRequests; }
+
     public List<OrderItem> getItems() { return items; }
     public void setItems(List<OrderItem> items) { this.items = items; }
 
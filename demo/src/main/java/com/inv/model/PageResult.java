@@ -0,0 +1,23 @@
+package com.inv.model;
+
+import java.util.List;
+
+// ผลลัพธ์แบบแบ่งหน้า (keyset): nextCursor เป็น null เมื่อไม่มีหน้าถัดไป
+public class PageResult<T> {
+    private List<T> items;
+    private String nextCursor;
+
+    public PageResult() {
+    }
+
+    public PageResult(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
@@ -14,6 +14,7 @@ public class Request {
     private String description;
     private String approvedBy;    // แก้เป็น String
     private LocalDateTime approvedDate;
+    private int openItems;        // จำนวนรายการที่ยังเบิกไม่ครบ
     private List<RequestItem> items;
 
     // --- Getters and Setters (ปรับ Type ของ ID) ---
@@ -45,6 +46,9 @@ public class Request {
     public LocalDateTime getApprovedDate() { return approvedDate; }
     public void setApprovedDate(LocalDateTime approvedDate) { this.approvedDate = approvedDate; }
 
+    public int getOpenItems() { return openItems; }
+    public void setOpenItems(int openItems) { this.openItems = openItems; }
+
     public List<RequestItem> getItems() { return items; }
     public void setItems(List<RequestItem> items) { this.items = items; }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.inv.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// ผลการอนุมัติ/ปฏิเสธคำขอเบิกหลายรายการ: สรุปจำนวน และผลแยกราย request_id ตามลำดับที่ส่งมา
+public class RequestDecisionResult {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<Outcome> results = new ArrayList<>();
+
+    public void success(String requestId, String status) {
+        total++;
+        succeeded++;
+        results.add(new Outcome(requestId, true, status, null));
+    }
+
+    // status คือสถานะปัจจุบันของคำขอ (null ถ้าไม่พบ)
+    public void failure(String requestId, String status, String message) {
+        total++;
+        failed++;
+        results.add(new Outcome(requestId, false, status, message));
+    }
+
+    // --- Getters and Setters ---
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+
+    public int getSucceeded() { return succeeded; }
+    public void setSucceeded(int succeeded) { this.succeeded = succeeded; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public List<Outcome> getResults() { return results; }
+    public void setResults(List<Outcome> results) { this.results = results; }
+
+    public static class Outcome {
+        private String requestId;
+        private boolean success;
+        private String status;
+        private String message;
+
+        public Outcome() {
+        }
+
+        public Outcome(String requestId, boolean success, String status, String message) {
+            this.requestId = requestId;
+            this.success = success;
+            this.status = status;
+            this.message = message;
+        }
+
+        public String getRequestId() { return requestId; }
+        public void setRequestId(String requestId) { this.requestId = requestId; }
+
+        public boolean isSuccess() { return success; }
+        public void setSuccess(boolean success) { this.success = success; }
+
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+    }
+}
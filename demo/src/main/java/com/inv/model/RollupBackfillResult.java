@@ -0,0 +1,34 @@
+package com.inv.model;
+
+import java.time.LocalDate;
+
+// ช่วงวันที่ที่สร้างยอด rollup ใหม่ และจำนวนแถวต่อสินค้าที่ได้
+public class RollupBackfillResult {
+    private LocalDate from;
+    private LocalDate to;
+    private int days;
+    private int rows;
+
+    public RollupBackfillResult() {
+    }
+
+    public RollupBackfillResult(LocalDate from, LocalDate to, int days, int rows) {
+        this.from = from;
+        this.to = to;
+        this.days = days;
+        this.rows = rows;
+    }
+
+    // --- Getters and Setters ---
+    public LocalDate getFrom() { return from; }
+    public void setFrom(LocalDate from) { this.from = from; }
+
+    public LocalDate getTo() { return to; }
+    public void setTo(LocalDate to) { this.to = to; }
+
+    public int getDays() { return days; }
+    public void setDays(int days) { this.days = days; }
+
+    public int getRows() { return rows; }
+    public void setRows(int rows) { this.rows = rows; }
+}
@@ -0,0 +1,28 @@
+package com.inv.model;
+
+import java.time.LocalDateTime;
+
+// ยอดคงเหลือของสินค้า ณ เวลาที่ระบุ
+public class StockLevel {
+    private String productId;
+    private int quantity;
+    private LocalDateTime asOf;
+
+    public StockLevel() {
+    }
+
+    public StockLevel(String productId, int quantity, LocalDateTime asOf) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.asOf = asOf;
+    }
+
+    public String getProductId() { return productId; }
+    public void setProductId(String productId) { this.productId = productId; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+
+    public LocalDateTime getAsOf() { return asOf; }
+    public void setAsOf(LocalDateTime asOf) { this.asOf = asOf; }
+}
@@ -0,0 +1,27 @@
+package com.inv.model;
+
+import java.time.LocalDateTime;
+
+// เงื่อนไขค้นหา StockTransaction: ทุก field เป็น optional, from รวม / to ไม่รวม
+public class StockTransactionFilter {
+    private String productId;
+    private String staffId;
+    private String type;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    public String getProductId() { return productId; }
+    public void setProductId(String productId) { this.productId = productId; }
+
+    public String getStaffId() { return staffId; }
+    public void setStaffId(String staffId) { this.staffId = staffId; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public LocalDateTime getFrom() { return from; }
+    public void setFrom(LocalDateTime from) { this.from = from; }
+
+    public LocalDateTime getTo() { return to; }
+    public void setTo(LocalDateTime to) { this.to = to; }
+}
@@ -6,6 +6,7 @@ public class Supplier {
     private String address;
     private String phone;
     private String email;
+    private Integer leadTimeDays; // ระยะเวลาส่งของ (วัน); null = ใช้ค่าเริ่มต้นของระบบ
 
     public void setSupplierId(String supplierId) {
         this.supplierId = supplierId;
@@ -26,4 +27,7 @@ public class Supplier {
 
     public String getEmail() { return email; }
     public void setEmail(String email) { this.email = email; }
+
+    public Integer getLeadTimeDays() { return leadTimeDays; }
+    public void setLeadTimeDays(Integer leadTimeDays) { this.leadTimeDays = leadTimeDays; }
 }
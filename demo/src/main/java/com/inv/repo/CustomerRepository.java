@@ -1,13 +1,18 @@
 package com.inv.repo;
 
 import com.inv.model.Customer;
+import com.inv.model.PageResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Repository
 public class CustomerRepository {
@@ -15,6 +20,10 @@ public class CustomerRepository {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    // sort: id, name
+    private final KeysetPager<Customer> pager = new KeysetPager<Customer>("Customer", "customer_id", Customer::getCustomerId, this::mapRow, "name")
+            .sortKey("name", "customer_name", v -> v, Customer::getCustomerName);
+
     private Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
         Customer c = new Customer();
         c.setCustomerId(rs.getString("customer_id")); // rs.getString
@@ -25,8 +34,8 @@ public class CustomerRepository {
         return c;
     }
 
-    public List<Customer> findAll() {
-        return jdbcTemplate.query("SELECT * FROM Customer", this::mapRow);
+    public PageResult<Customer> findPage(String sort, String cursor, int limit) {
+        return pager.page(jdbcTemplate, sort, cursor, limit);
     }
 
     public Customer findById(String id) { // รับ String id
@@ -48,6 +57,28 @@ public class CustomerRepository {
         return list.isEmpty() ? null : list.get(0);
     }
 
+    // ค่าใน phones ที่มีอยู่แล้วในตาราง (query เดียว)
+    public Set<String> findExistingPhones(Collection<String> phones) {
+        return new HashSet<>(jdbcTemplate.query("SELECT phone FROM Customer WHERE phone = ANY (?)",
+                SqlArrays.varcharArray(phones), (rs, rowNum) -> rs.getString("phone")));
+    }
+
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return new HashSet<>(jdbcTemplate.query("SELECT email FROM Customer WHERE email = ANY (?)",
+                SqlArrays.varcharArray(emails), (rs, rowNum) -> rs.getString("email")));
+    }
+
+    // insert ทั้งหมดใน JDBC batch เดียว; แถวที่อีเมลชนกับข้อมูลที่เพิ่งถูกเพิ่มจะถูกข้าม (ค่าใน array เป็น 0)
+    public int[] saveAll(List<Customer> customers) {
+        List<Object[]> args = new ArrayList<>(customers.size());
+        for (Customer c : customers) {
+            args.add(new Object[]{c.getCustomerId(), c.getCustomerName(), c.getAddress(), c.getPhone(), c.getEmail()});
+        }
+        return jdbcTemplate.batchUpdate(
+                "INSERT INTO Customer(customer_id, customer_name, address, phone, email) VALUES (?,?,?,?,?) ON CONFLICT DO NOTHING",
+                args);
+    }
+
     // แก้ไข: save ไม่ return ค่าแล้ว และเพิ่ม customer_id ในการ insert
     public void save(Customer c) {
         String sql = "INSERT INTO Customer(customer_id, customer_name, address, phone, email) VALUES (?,?,?,?,?)";
@@ -0,0 +1,38 @@
+package com.inv.repo;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// snapshot ของ PostgreSQL (ผลของ pg_current_snapshot() รูปแบบ xmin:xmax:xip,...)
+// ใช้ตัดสินว่า transaction ที่ commit แล้วถูกรวมอยู่ในข้อมูลที่อ่านด้วย snapshot นี้หรือไม่
+public final class DbSnapshot {
+
+    private final long xmin;
+    private final long xmax;
+    private final Set<Long> inProgress;
+
+    private DbSnapshot(long xmin, long xmax, Set<Long> inProgress) {
+        this.xmin = xmin;
+        this.xmax = xmax;
+        this.inProgress = inProgress;
+    }
+
+    public static DbSnapshot parse(String text) {
+        String[] parts = text.split(":", -1);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid snapshot: " + text);
+        }
+        Set<Long> inProgress = new HashSet<>();
+        if (!parts[2].isEmpty()) {
+            for (String xid : parts[2].split(",")) {
+                inProgress.add(Long.parseLong(xid));
+            }
+        }
+        return new DbSnapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), inProgress);
+    }
+
+    // เงื่อนไขเดียวกับ pg_visible_in_snapshot(): ผลของ transaction txId ถูกรวมอยู่ในข้อมูลที่อ่านแล้ว
+    public boolean includes(long txId) {
+        return txId < xmin || (txId < xmax && !inProgress.contains(txId));
+    }
+}
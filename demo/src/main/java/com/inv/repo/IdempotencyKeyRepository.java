@@ -0,0 +1,54 @@
+package com.inv.repo;
+
+import com.inv.model.IdempotencyRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+@Repository
+public class IdempotencyKeyRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private IdempotencyRecord mapRow(ResultSet rs, int rowNum) throws SQLException {
+        IdempotencyRecord r = new IdempotencyRecord();
+        r.setMethod(rs.getString("method"));
+        r.setPath(rs.getString("path"));
+        r.setRequestHash(rs.getString("request_hash"));
+        r.setCompleted(rs.getBoolean("completed"));
+        r.setStatus(rs.getInt("status"));
+        r.setContentType(rs.getString("content_type"));
+        r.setBody(rs.getBytes("body"));
+        return r;
+    }
+
+    public IdempotencyRecord find(String staffId, String key) {
+        List<IdempotencyRecord> list = jdbcTemplate.query(
+                "SELECT * FROM IdempotencyKey WHERE staff_id = ? AND idem_key = ?", this::mapRow, staffId, key);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    // จอง key ก่อนประมวลผล; คืน false ถ้ามีคนจองไว้แล้ว (INSERT เดียว ไม่ต้องตรวจก่อน)
+    // เรียกภายใน transaction ของ request: ถ้าอีก request จอง key เดียวกันไว้โดยยังไม่ commit คำสั่งนี้จะรอจนอีกฝั่งจบ
+    public boolean claim(String staffId, String key, String method, String path, String requestHash) {
+        return jdbcTemplate.update(
+                "INSERT INTO IdempotencyKey(staff_id, idem_key, method, path, request_hash) VALUES (?, ?, ?, ?, ?) ON CONFLICT (staff_id, idem_key) DO NOTHING",
+                staffId, key, method, path, requestHash) > 0;
+    }
+
+    public void complete(String staffId, String key, IdempotencyRecord record) {
+        jdbcTemplate.update(
+                "UPDATE IdempotencyKey SET completed = TRUE, status = ?, content_type = ?, body = ? WHERE staff_id = ? AND idem_key = ?",
+                record.getStatus(), record.getContentType(), record.getBody(), staffId, key);
+    }
+
+    public int deleteExpired(int ttlHours) {
+        return jdbcTemplate.update(
+                "DELETE FROM IdempotencyKey WHERE created_at < NOW() - make_interval(hours => ?)", ttlHours);
+    }
+}
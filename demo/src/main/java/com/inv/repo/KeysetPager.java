@@ -0,0 +1,100 @@
+package com.inv.repo;
+
+import com.inv.model.PageResult;
+import com.inv.util.KeysetCursor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// แบ่งหน้าแบบ keyset สำหรับ list endpoint: sort ได้เฉพาะคีย์ที่อนุญาต ("name" = น้อยไปมาก, "-name" = มากไปน้อย)
+// โดยใช้ primary key เป็นตัวตัดสินเมื่อค่าเท่ากัน ทุกคีย์ต้องเป็นคอลัมน์ NOT NULL
+// cursor เก็บ (sort, ค่าคีย์ของแถวสุดท้าย, id ของแถวสุดท้าย) จึงใช้ข้าม sort ไม่ได้
+// โยน IllegalArgumentException เมื่อ sort หรือ cursor ไม่ถูกต้อง
+final class KeysetPager<T> {
+
+    private static final class SortKey<T> {
+        final String column;
+        final Function<String, Object> parser;  // ค่าใน cursor -> parameter ของ query
+        final Function<T, String> extractor;     // แถว -> ค่าที่เก็บใน cursor
+
+        SortKey(String column, Function<String, Object> parser, Function<T, String> extractor) {
+            this.column = column;
+            this.parser = parser;
+            this.extractor = extractor;
+        }
+    }
+
+    private final String table;
+    private final String idColumn;
+    private final Function<T, String> idOf;
+    private final RowMapper<T> mapper;
+    private final String defaultSort;
+    private final Map<String, SortKey<T>> keys = new LinkedHashMap<>();
+
+    KeysetPager(String table, String idColumn, Function<T, String> idOf, RowMapper<T> mapper, String defaultSort) {
+        this.table = table;
+        this.idColumn = idColumn;
+        this.idOf = idOf;
+        this.mapper = mapper;
+        this.defaultSort = defaultSort;
+        sortKey("id", idColumn, v -> v, idOf);
+    }
+
+    KeysetPager<T> sortKey(String name, String column, Function<String, Object> parser, Function<T, String> extractor) {
+        keys.put(name, new SortKey<>(column, parser, extractor));
+        return this;
+    }
+
+    PageResult<T> page(JdbcTemplate jdbcTemplate, String sort, String cursor, int limit) {
+        String sortParam = sort == null || sort.isEmpty() ? defaultSort : sort;
+        boolean desc = sortParam.startsWith("-");
+        SortKey<T> key = keys.get(desc ? sortParam.substring(1) : sortParam);
+        if (key == null) {
+            throw new IllegalArgumentException("sort ต้องเป็นหนึ่งใน: " + String.join(", ", keys.keySet()) + " (ใส่ - นำหน้าเพื่อเรียงจากมากไปน้อย)");
+        }
+        boolean byId = key.column.equals(idColumn);
+        String direction = desc ? "DESC" : "ASC";
+
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(table);
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] last = KeysetCursor.decode(cursor, 3);
+            if (!last[0].equals(sortParam)) {
+                throw new IllegalArgumentException("cursor ไม่ตรงกับ sort ที่ระบุ");
+            }
+            String op = desc ? "<" : ">";
+            if (byId) {
+                sql.append(" WHERE ").append(idColumn).append(' ').append(op).append(" ?");
+            } else {
+                sql.append(" WHERE (").append(key.column).append(", ").append(idColumn).append(") ").append(op).append(" (?, ?)");
+                try {
+                    params.add(key.parser.apply(last[1]));
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("cursor ไม่ถูกต้อง");
+                }
+            }
+            params.add(last[2]);
+        }
+        sql.append(" ORDER BY ");
+        if (!byId) {
+            sql.append(key.column).append(' ').append(direction).append(", ");
+        }
+        sql.append(idColumn).append(' ').append(direction).append(" LIMIT ?");
+        // ดึงเกินมา 1 แถวเพื่อรู้ว่ามีหน้าถัดไปหรือไม่
+        params.add(limit + 1);
+
+        List<T> rows = jdbcTemplate.query(sql.toString(), mapper, params.toArray());
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            T last = rows.get(limit - 1);
+            nextCursor = KeysetCursor.encode(sortParam, key.extractor.apply(last), idOf.apply(last));
+        }
+        return new PageResult<>(rows, nextCursor);
+    }
+}
@@ -2,13 +2,19 @@ package com.inv.repo;
 
 import com.inv.model.Order;
 import com.inv.model.OrderItem;
+import com.inv.model.PageResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class OrderRepository {
@@ -16,6 +22,10 @@ public class OrderRepository {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    // sort: id, date
+    private final KeysetPager<Order> pager = new KeysetPager<Order>("\"Order\"", "order_id", Order::getOrderId, this::mapRow, "-date")
+            .sortKey("date", "order_date", v -> Date.valueOf(LocalDate.parse(v)), o -> o.getOrderDate().toString());
+
     private Order mapRow(ResultSet rs, int rowNum) throws SQLException {
         Order o = new Order();
         o.setOrderId(rs.getString("order_id")); // rs.getString
@@ -24,6 +34,8 @@ public class OrderRepository {
         o.setStatus(rs.getString("status"));
         o.setCustomerId(rs.getString("customer_id")); // rs.getString
         o.setStaffId(rs.getString("staff_id"));       // rs.getString
+        o.setOpenItems(rs.getInt("open_items"));
+        o.setOpenRequests(rs.getInt("open_requests"));
         return o;
     }
 
@@ -40,22 +52,41 @@ public class OrderRepository {
         return i;
     }
 
-    public List<Order> findAll() {
-        return jdbcTemplate.query("SELECT * FROM \"Order\" ORDER BY order_date DESC", this::mapRow);
+    public PageResult<Order> findPage(String sort, String cursor, int limit) {
+        return pager.page(jdbcTemplate, sort, cursor, limit);
+    }
+
+    public Order findById(String orderId) {
+        List<Order> list = jdbcTemplate.query("SELECT * FROM \"Order\" WHERE order_id = ?", this::mapRow, orderId);
+        return list.isEmpty() ? null : list.get(0);
     }
 
     public void save(Order o) {
         jdbcTemplate.update(
-                "INSERT INTO \"Order\"(order_id, order_date, total_amount, status, customer_id, staff_id) VALUES (?, CURRENT_DATE, ?, ?, ?, ?)",
-                o.getOrderId(), o.getTotalAmount(), o.getStatus(), o.getCustomerId(), o.getStaffId()
+                "INSERT INTO \"Order\"(order_id, order_date, total_amount, status, customer_id, staff_id, open_items, open_requests) VALUES (?, CURRENT_DATE, ?, ?, ?, ?, ?, 0)",
+                o.getOrderId(), o.getTotalAmount(), o.getStatus(), o.getCustomerId(), o.getStaffId(), o.getOpenItems()
         );
     }
 
-    public void saveOrderItem(OrderItem i) {
-        jdbcTemplate.update(
-                "INSERT INTO orderitem(order_item_id, order_id, product_id, quantity, unit_price, line_total, fulfilled_qty, remaining_qty) VALUES (?,?,?,?,?,?,?,?)",
-                i.getOrderItemId(), i.getOrderId(), i.getProductId(), i.getQuantity(),
-                i.getUnitPrice(), i.getLineTotal(), i.getFulfilledQty(), i.getQuantity() // remaining_qty starts equal to quantity
+    public void incrementOpenRequests(String orderId) {
+        jdbcTemplate.update("UPDATE \"Order\" SET open_requests = open_requests + 1 WHERE order_id = ?", orderId);
+    }
+
+    // บันทึกทุกรายการใน JDBC batch เดียว (remaining_qty เป็น generated column จึงไม่ต้อง insert)
+    public void saveOrderItems(List<OrderItem> items) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO orderitem(order_item_id, order_id, product_id, quantity, unit_price, line_total, fulfilled_qty) VALUES (?,?,?,?,?,?,?)",
+                items,
+                items.size(),
+                (ps, i) -> {
+                    ps.setString(1, i.getOrderItemId());
+                    ps.setString(2, i.getOrderId());
+                    ps.setString(3, i.getProductId());
+                    ps.setInt(4, i.getQuantity());
+                    ps.setBigDecimal(5, i.getUnitPrice());
+                    ps.setBigDecimal(6, i.getLineTotal());
+                    ps.setInt(7, i.getFulfilledQty());
+                }
         );
     }
 
@@ -67,29 +98,47 @@ public class OrderRepository {
         return jdbcTemplate.query("SELECT * FROM orderitem WHERE order_id = ?", this::mapRowItem, orderId);
     }
 
+    // รายการสินค้าของหลาย Order ใน query เดียว
+    public List<OrderItem> findItemsByOrderIds(Collection<String> orderIds) {
+        return jdbcTemplate.query("SELECT * FROM orderitem WHERE order_id = ANY (?)", SqlArrays.varcharArray(orderIds), this::mapRowItem);
+    }
+
+    // เพิ่ม fulfilled_qty ของ OrderItem และลด open_items ของ Order สำหรับรายการที่เพิ่งส่งครบ ใน statement เดียว
+    private static final String UPDATE_ORDER_ITEM_FULFILLMENT =
+            "WITH oi AS (" +
+            "  UPDATE OrderItem SET fulfilled_qty = fulfilled_qty + ? WHERE order_id = ? AND product_id = ? RETURNING remaining_qty" +
+            ") UPDATE \"Order\" SET open_items = open_items - (SELECT COUNT(*) FROM oi WHERE remaining_qty <= 0 AND remaining_qty + ? > 0)" +
+            " WHERE order_id = ?";
+
     public void updateOrderItemFulfillment(String orderId, String productId, int fulfillQty) { // รับ String IDs
-        jdbcTemplate.update("UPDATE OrderItem SET fulfilled_qty = fulfilled_qty + ? WHERE order_id = ? AND product_id = ?", fulfillQty, orderId, productId);
+        jdbcTemplate.update(UPDATE_ORDER_ITEM_FULFILLMENT, fulfillQty, orderId, productId, fulfillQty, orderId);
     }
 
-    public boolean areAllOrderItemsFulfilled(String orderId) { // รับ String orderId
-        String sql = "SELECT COUNT(*) FROM OrderItem WHERE order_id = ? AND remaining_qty > 0";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, orderId);
-        return count != null && count == 0;
+    // quantities: order_id -> (product_id -> จำนวนที่เบิก)
+    public void updateOrderItemFulfillments(Map<String, Map<String, Integer>> quantities) {
+        List<Object[]> args = new ArrayList<>();
+        quantities.forEach((orderId, byProduct) ->
+                byProduct.forEach((productId, qty) -> args.add(new Object[]{qty, orderId, productId, qty, orderId})));
+        jdbcTemplate.batchUpdate(UPDATE_ORDER_ITEM_FULFILLMENT, args);
     }
 
     public List<Order> findOrdersReadyToClose() {
-        String sql = "SELECT * FROM \"Order\" AS o WHERE o.status = 'Confirmed' AND NOT EXISTS (SELECT 1 FROM OrderItem AS oi WHERE oi.order_id = o.order_id AND oi.remaining_qty > 0)";
+        String sql = "SELECT * FROM \"Order\" AS o WHERE o.status = 'Confirmed' AND o.open_items = 0";
         return jdbcTemplate.query(sql, this::mapRow);
     }
 
-    public boolean hasPendingRequests(String orderId) { // รับ String orderId
-        String sql = "SELECT COUNT(*) FROM Request WHERE order_id = ? AND status != 'Closed'";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, orderId);
-        return count != null && count > 0;
+    // ปิด Order ที่ส่งครบและไม่มีคำขอเบิกค้าง ครั้งละไม่เกิน limit แถว ข้ามแถวที่ถูก lock อยู่; คืน order_id ที่ถูกปิด
+    public List<String> closeReadyOrders(int limit) {
+        String sql = "WITH picked AS (" +
+                "  SELECT order_id FROM \"Order\" WHERE status = 'Confirmed' AND open_items = 0 AND open_requests = 0" +
+                "  ORDER BY order_id LIMIT ? FOR UPDATE SKIP LOCKED" +
+                ") UPDATE \"Order\" o SET status = 'Closed' FROM picked p WHERE o.order_id = p.order_id RETURNING o.order_id";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("order_id"), limit);
     }
 
-    public void closeOrder(String orderId, String staffId) { // รับ String IDs
+    // ปิดได้เมื่อไม่มีคำขอเบิกที่ยังไม่ปิด (open_requests = 0); คืน false ถ้าปิดไม่ได้หรือไม่พบ
+    public boolean closeOrder(String orderId, String staffId) { // รับ String IDs
         // แก้ไข: ลบ staffId ที่ไม่ได้ใช้ออกจาก argument ของ update
-        jdbcTemplate.update("UPDATE \"Order\" SET status = 'Closed' WHERE order_id = ?", orderId);
+        return jdbcTemplate.update("UPDATE \"Order\" SET status = 'Closed' WHERE order_id = ? AND open_requests = 0", orderId) > 0;
     }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.inv.repo;
+
+import com.inv.model.Product;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+// ตารางพัก (temp table) สำหรับนำเข้าสินค้าจำนวนมาก: เขียนทีละแถวผ่าน COPY แล้ว merge เข้า product ด้วย SQL ชุดเดียว
+// ต้องใช้ภายใน transaction เดียว (ตารางถูก DROP เมื่อ commit/rollback) และห้ามรัน query อื่นระหว่าง add() กับ finish()
+public class ProductImportStaging {
+
+    private static final String COPY_SQL = "COPY product_import (line_number, product_id, product_name, description, unit, price_per_unit, supplier_id, image_url) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CopyIn copyIn;
+    private final StringBuilder row = new StringBuilder();
+
+    ProductImportStaging(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        jdbcTemplate.execute("CREATE TEMP TABLE product_import (" +
+                "line_number INT NOT NULL, product_id VARCHAR(20) NOT NULL, product_name VARCHAR(100) NOT NULL, description TEXT, " +
+                "unit VARCHAR(50), price_per_unit DECIMAL(10,2), supplier_id VARCHAR(20), image_url VARCHAR(255)) ON COMMIT DROP");
+        // connection เดียวกับ transaction ปัจจุบัน (JdbcTemplate ผูกไว้ให้แล้ว)
+        this.copyIn = jdbcTemplate.execute((ConnectionCallback<CopyIn>) con ->
+                con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL));
+    }
+
+    public void add(int lineNumber, Product p) {
+        row.setLength(0);
+        row.append(lineNumber).append(',')
+                .append(quote(p.getProductId())).append(',')
+                .append(quote(p.getProductName())).append(',')
+                .append(quote(p.getDescription())).append(',')
+                .append(quote(p.getUnit())).append(',')
+                .append(p.getPricePerUnit() != null ? p.getPricePerUnit().toPlainString() : "").append(',')
+                .append(quote(p.getSupplierId())).append(',')
+                .append(quote(p.getImageUrl())).append('\n');
+        byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("COPY product_import", COPY_SQL, e);
+        }
+    }
+
+    // จบ COPY: คืนจำนวนแถวในตารางพัก
+    public long finish() {
+        try {
+            return copyIn.endCopy();
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("COPY product_import", COPY_SQL, e);
+        }
+    }
+
+    // ยกเลิก COPY ที่ค้างอยู่ เพื่อให้ connection rollback ได้ตามปกติ
+    public void cancel() {
+        try {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            // transaction จะถูก rollback อยู่แล้ว
+        }
+    }
+
+    // ลบแถวที่อ้างถึง supplier ที่ไม่มีในระบบด้วย statement เดียว: คืน line_number -> supplier_id เรียงตามบรรทัด
+    public Map<Integer, String> removeUnknownSuppliers() {
+        Map<Integer, String> removed = new TreeMap<>();
+        jdbcTemplate.query(
+                "DELETE FROM product_import i WHERE i.supplier_id IS NOT NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM Supplier s WHERE s.supplier_id = i.supplier_id) " +
+                        "RETURNING i.line_number, i.supplier_id",
+                (RowCallbackHandler) rs -> removed.put(rs.getInt("line_number"), rs.getString("supplier_id"))
+        );
+        return removed;
+    }
+
+    // ย้ายแถวที่เหลือทั้งหมดเข้า product (quantity เริ่มที่ 0 เหมือน save)
+    public int merge() {
+        return jdbcTemplate.update(
+                "INSERT INTO product (product_id, product_name, description, unit, price_per_unit, supplier_id, quantity, image_url) " +
+                        "SELECT product_id, product_name, description, unit, price_per_unit, supplier_id, 0, image_url " +
+                        "FROM product_import ORDER BY line_number");
+    }
+
+    // COPY แบบ csv: ช่องว่างที่ไม่มี quote = NULL จึง quote ทุกค่าที่ไม่ใช่ null
+    private static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,13 +1,23 @@
 package com.inv.repo;
 
+import com.inv.model.PageResult;
 import com.inv.model.Product;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository
 public class ProductRepository {
@@ -15,6 +25,10 @@ public class ProductRepository {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    // sort: id, name
+    private final KeysetPager<Product> pager = new KeysetPager<Product>("product", "product_id", Product::getProductId, this::mapRow, "name")
+            .sortKey("name", "product_name", v -> v, Product::getProductName);
+
     private Product mapRow(ResultSet rs, int rowNum) throws SQLException {
         Product p = new Product();
         p.setProductId(rs.getString("product_id")); // rs.getString
@@ -29,7 +43,11 @@ public class ProductRepository {
     }
 
     public List<Product> findAll() {
-        return jdbcTemplate.query("SELECT * FROM product ORDER BY product_name", this::mapRow);
+        return jdbcTemplate.query("SELECT * FROM product ORDER BY product_name, product_id", this::mapRow);
+    }
+
+    public PageResult<Product> findPage(String sort, String cursor, int limit) {
+        return pager.page(jdbcTemplate, sort, cursor, limit);
     }
 
     public Product findById(String id) { // รับ String id
@@ -41,6 +59,51 @@ public class ProductRepository {
         return list.isEmpty() ? null : list.get(0);
     }
 
+    public Map<String, Integer> findAllQuantities() {
+        Map<String, Integer> result = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity FROM product",
+                (RowCallbackHandler) rs -> result.put(rs.getString("product_id"), rs.getInt("quantity")));
+        return result;
+    }
+
+    // product_id -> supplier_id เฉพาะสินค้าที่ระบุผู้จำหน่าย
+    public Map<String, String> findAllSupplierIds() {
+        Map<String, String> result = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, supplier_id FROM product WHERE supplier_id IS NOT NULL",
+                (RowCallbackHandler) rs -> result.put(rs.getString("product_id"), rs.getString("supplier_id")));
+        return result;
+    }
+
+    // เฉพาะคอลัมน์ที่ใช้คำนวณมูลค่า ส่งทีละแถวไม่เก็บทั้งชุด
+    public void streamValuationRows(Consumer<Product> consumer) {
+        jdbcTemplate.query("SELECT product_id, supplier_id, quantity, price_per_unit FROM product", (RowCallbackHandler) rs -> {
+            Product p = new Product();
+            p.setProductId(rs.getString("product_id"));
+            p.setSupplierId(rs.getString("supplier_id"));
+            p.setQuantity(rs.getInt("quantity"));
+            p.setPricePerUnit(rs.getBigDecimal("price_per_unit"));
+            consumer.accept(p);
+        });
+    }
+
+    public Map<String, BigDecimal> findPricesByIds(Collection<String> ids) {
+        Map<String, BigDecimal> result = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT product_id, price_per_unit FROM product WHERE product_id = ANY (?)",
+                SqlArrays.varcharArray(ids),
+                (RowCallbackHandler) rs -> result.put(rs.getString("product_id"), rs.getBigDecimal("price_per_unit"))
+        );
+        return result;
+    }
+
+    public Set<String> findExistingIds(Collection<String> ids) {
+        return new HashSet<>(jdbcTemplate.query(
+                "SELECT product_id FROM product WHERE product_id = ANY (?)",
+                SqlArrays.varcharArray(ids),
+                (rs, rowNum) -> rs.getString("product_id")
+        ));
+    }
+
     public void save(Product p) {
         // แก้ไข SQL ให้มี placeholder 8 ตัวให้ตรงกับจำนวนคอลัมน์
         String sql = "INSERT INTO product (product_id, product_name, description, unit, price_per_unit, supplier_id, quantity, image_url) " +
@@ -58,7 +121,112 @@ public class ProductRepository {
         );
     }
 
+    // เปิดตารางพักสำหรับนำเข้าสินค้าผ่าน COPY (ต้องเรียกภายใน transaction)
+    public ProductImportStaging openImportStaging() {
+        return new ProductImportStaging(jdbcTemplate);
+    }
+
+    public boolean updatePrice(String productId, BigDecimal pricePerUnit) {
+        return jdbcTemplate.update("UPDATE product SET price_per_unit = ? WHERE product_id = ?", pricePerUnit, productId) > 0;
+    }
+
     public void updateQuantity(String productId, int diff) { // รับ String productId
         jdbcTemplate.update("UPDATE product SET quantity = quantity + ? WHERE product_id = ?", diff, productId);
     }
+
+    // เพิ่ม/ลดสต็อกหลายสินค้าใน JDBC batch เดียว
+    public void updateQuantities(Map<String, Integer> diffs) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(diffs.entrySet());
+        jdbcTemplate.batchUpdate(
+                "UPDATE product SET quantity = quantity + ? WHERE product_id = ?",
+                entries,
+                entries.size(),
+                (ps, e) -> {
+                    ps.setInt(1, e.getValue());
+                    ps.setString(2, e.getKey());
+                }
+        );
+    }
+
+    // ตัดสต็อกแบบมีเงื่อนไขใน statement เดียว: คืนยอดคงเหลือใหม่ หรือ null ถ้าสินค้าไม่พอ/ไม่พบสินค้า
+    public Integer decrementQuantityIfAvailable(String productId, int qty) {
+        List<Integer> list = jdbcTemplate.query(
+                "UPDATE product SET quantity = quantity - ? WHERE product_id = ? AND quantity >= ? RETURNING quantity",
+                (rs, rowNum) -> rs.getInt("quantity"),
+                qty, productId, qty
+        );
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    // ตัดสต็อกหลายสินค้าใน JDBC batch เดียว (เงื่อนไขเดียวกับ decrementQuantityIfAvailable)
+    // คืนรายการ product_id ที่สต็อกไม่พอ; ควรส่ง Map ที่เรียงตาม product_id เพื่อลดโอกาส deadlock
+    public List<String> decrementQuantitiesIfAvailable(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(quantities.entrySet());
+        int[] counts = jdbcTemplate.batchUpdate(
+                "UPDATE product SET quantity = quantity - ? WHERE product_id = ? AND quantity >= ?",
+                entries,
+                entries.size(),
+                (ps, e) -> {
+                    ps.setInt(1, e.getValue());
+                    ps.setString(2, e.getKey());
+                    ps.setInt(3, e.getValue());
+                }
+        )[0];
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                failed.add(entries.get(i).getKey());
+            }
+        }
+        return failed;
+    }
+
+    // ล็อกแถวสินค้าเรียงตาม product_id: การจองและการเบิกสินค้าเดียวกันจะทำทีละ transaction
+    public void lockForUpdate(Collection<String> productIds) {
+        jdbcTemplate.query(
+                "SELECT product_id FROM product WHERE product_id = ANY (?) ORDER BY product_id FOR UPDATE",
+                SqlArrays.varcharArray(productIds),
+                (RowCallbackHandler) rs -> { }
+        );
+    }
+
+    // สินค้าที่ยอดจองรวมใน StockReservation เกินยอดคงเหลือ (รวมการเปลี่ยนแปลงของ transaction นี้)
+    // ต้องเรียกหลังถือ lock ของแถว product แล้ว (ผ่าน lockForUpdate หรือ UPDATE) เพื่อให้เห็นการจองที่ commit ล่าสุด
+    public List<String> findOverReserved(Collection<String> productIds) {
+        return jdbcTemplate.query(
+                "SELECT p.product_id FROM product p WHERE p.product_id = ANY (?) AND p.quantity < " +
+                        "(SELECT COALESCE(SUM(r.quantity), 0) FROM StockReservation r WHERE r.product_id = p.product_id) " +
+                        "ORDER BY p.product_id",
+                SqlArrays.varcharArray(productIds),
+                (rs, rowNum) -> rs.getString("product_id")
+        );
+    }
+
+    // ยอดคงเหลือที่ยังไม่ถูกจอง (quantity - ยอดจองรวมใน StockReservation) ต่อสินค้า
+    // ต้องเรียกหลังถือ lock ของแถว product แล้ว ยอดที่ได้จึงไม่เปลี่ยนจนกว่า transaction นี้จะจบ
+    public Map<String, Integer> findUnreserved(Collection<String> productIds) {
+        Map<String, Integer> result = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT p.product_id, p.quantity - " +
+                        "(SELECT COALESCE(SUM(r.quantity), 0) FROM StockReservation r WHERE r.product_id = p.product_id) AS unreserved " +
+                        "FROM product p WHERE p.product_id = ANY (?)",
+                SqlArrays.varcharArray(productIds),
+                (RowCallbackHandler) rs -> result.put(rs.getString("product_id"), rs.getInt("unreserved"))
+        );
+        return result;
+    }
+
+    // xid ของ transaction ปัจจุบัน (ต้องเรียกภายใน transaction ที่เขียนข้อมูล) ใช้ระบุ StockLevelChangedEvent
+    public long currentTransactionId() {
+        return jdbcTemplate.queryForObject("SELECT pg_current_xact_id()::text::bigint", Long.class);
+    }
+
+    // snapshot ที่ query ใน transaction นี้ใช้อ่าน (เรียกเป็นคำสั่งแรกของ transaction แบบ REPEATABLE READ
+    // เพื่อให้ตรงกับข้อมูลที่อ่านต่อจากนี้)
+    public DbSnapshot currentSnapshot() {
+        return DbSnapshot.parse(jdbcTemplate.queryForObject("SELECT pg_current_snapshot()::text", String.class));
+    }
 }
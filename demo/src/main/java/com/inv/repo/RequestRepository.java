@@ -1,14 +1,20 @@
 package com.inv.repo;
 
+import com.inv.model.PageResult;
 import com.inv.model.Request;
 import com.inv.model.RequestItem;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class RequestRepository {
@@ -16,6 +22,10 @@ public class RequestRepository {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    // sort: id, date
+    private final KeysetPager<Request> pager = new KeysetPager<Request>("Request", "request_id", Request::getRequestId, this::mapRow, "-date")
+            .sortKey("date", "request_date", v -> Date.valueOf(LocalDate.parse(v)), r -> r.getRequestDate().toString());
+
     private Request mapRow(ResultSet rs, int rowNum) throws SQLException {
         Request r = new Request();
         r.setRequestId(rs.getString("request_id"));
@@ -27,6 +37,7 @@ public class RequestRepository {
         r.setDescription(rs.getString("description"));
         r.setApprovedBy(rs.getString("approved_by"));
         r.setApprovedDate(rs.getTimestamp("approved_date") != null ? rs.getTimestamp("approved_date").toLocalDateTime() : null);
+        r.setOpenItems(rs.getInt("open_items"));
         return r;
     }
 
@@ -41,21 +52,29 @@ public class RequestRepository {
         return i;
     }
 
-    public List<Request> findAll() {
-        return jdbcTemplate.query("SELECT * FROM Request ORDER BY request_date DESC", this::mapRow);
+    public PageResult<Request> findPage(String sort, String cursor, int limit) {
+        return pager.page(jdbcTemplate, sort, cursor, limit);
     }
 
     public void save(Request r) {
         jdbcTemplate.update(
-                "INSERT INTO request(request_id, request_date, status, order_id, customer_id, staff_id, description) VALUES (?, CURRENT_DATE, ?, ?, ?, ?, ?)",
-                r.getRequestId(), "Awaiting Approval", r.getOrderId(), r.getCustomerId(), r.getStaffId(), r.getDescription()
+                "INSERT INTO request(request_id, request_date, status, order_id, customer_id, staff_id, description, open_items) VALUES (?, CURRENT_DATE, ?, ?, ?, ?, ?, ?)",
+                r.getRequestId(), "Awaiting Approval", r.getOrderId(), r.getCustomerId(), r.getStaffId(), r.getDescription(), r.getOpenItems()
         );
     }
 
-    public void saveRequestItem(RequestItem i) {
-        jdbcTemplate.update(
-                "INSERT INTO requestitem(request_item_id, request_id, product_id, quantity, fulfilled_qty, remaining_qty) VALUES (?,?,?,?,?,?)",
-                i.getRequestItemId(), i.getRequestId(), i.getProductId(), i.getQuantity(), 0, i.getQuantity()
+    // บันทึกทุกรายการใน JDBC batch เดียว (remaining_qty เป็น generated column จึงไม่ต้อง insert)
+    public void saveRequestItems(List<RequestItem> items) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO requestitem(request_item_id, request_id, product_id, quantity, fulfilled_qty) VALUES (?,?,?,?,0)",
+                items,
+                items.size(),
+                (ps, i) -> {
+                    ps.setString(1, i.getRequestItemId());
+                    ps.setString(2, i.getRequestId());
+                    ps.setString(3, i.getProductId());
+                    ps.setInt(4, i.getQuantity());
+                }
         );
     }
 
@@ -69,6 +88,16 @@ public class RequestRepository {
         return items.isEmpty() ? null : items.get(0);
     }
 
+    // ล็อกแถวตามลำดับ ID เพื่อให้การเบิกแบบ batch ตรวจสอบ remaining_qty ได้ถูกต้อง
+    public List<RequestItem> findItemsByIdsForUpdate(Collection<String> requestItemIds) {
+        String sql = "SELECT * FROM requestitem WHERE request_item_id = ANY (?) ORDER BY request_item_id FOR UPDATE";
+        return jdbcTemplate.query(sql, SqlArrays.varcharArray(requestItemIds), this::mapRowItem);
+    }
+
+    public List<Request> findByIds(Collection<String> requestIds) {
+        return jdbcTemplate.query("SELECT * FROM request WHERE request_id = ANY (?)", SqlArrays.varcharArray(requestIds), this::mapRow);
+    }
+
     public Request findById(String requestId) { // รับ String
         String sql = "SELECT * FROM request WHERE request_id = ?";
         List<Request> requests = jdbcTemplate.query(sql, this::mapRow, requestId);
@@ -83,30 +112,131 @@ public class RequestRepository {
         return jdbcTemplate.query("SELECT * FROM requestitem WHERE request_id = ?", this::mapRowItem, requestId);
     }
 
-    public void updateItemFulfillment(String requestItemId, int fulfillQty) { // รับ String
-        jdbcTemplate.update("UPDATE requestitem SET fulfilled_qty = fulfilled_qty + ? WHERE request_item_id = ?", fulfillQty, requestItemId);
+    // รายการเบิกของหลาย Request ใน query เดียว
+    public List<RequestItem> findItemsByRequestIds(Collection<String> requestIds) {
+        return jdbcTemplate.query("SELECT * FROM requestitem WHERE request_id = ANY (?)", SqlArrays.varcharArray(requestIds), this::mapRowItem);
+    }
+
+    // เพิ่ม fulfilled_qty เฉพาะเมื่อ remaining_qty ยังพอ และลด open_items ของ Request ใน statement เดียวกัน
+    // เมื่อรายการนี้เบิกครบ; คืน null ถ้าไม่พบรายการหรือเบิกเกิน
+    public ItemFulfillment fulfillItemIfRemaining(String requestItemId, int fulfillQty) {
+        String sql = "WITH ri AS (" +
+                "  UPDATE requestitem SET fulfilled_qty = fulfilled_qty + ? WHERE request_item_id = ? AND remaining_qty >= ? RETURNING *" +
+                "), r AS (" +
+                "  UPDATE request SET open_items = request.open_items - 1 FROM ri" +
+                "  WHERE request.request_id = ri.request_id AND ri.remaining_qty = 0 RETURNING request.open_items" +
+                ") SELECT ri.*, (SELECT open_items FROM r) AS request_open_items," +
+                " (SELECT order_id FROM request WHERE request.request_id = ri.request_id) AS order_id FROM ri";
+        List<ItemFulfillment> results = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            ItemFulfillment f = new ItemFulfillment();
+            f.item = mapRowItem(rs, rowNum);
+            f.orderId = rs.getString("order_id");
+            // request_open_items เป็น NULL เมื่อรายการนี้ยังเบิกไม่ครบ (ไม่ได้ลดตัวนับ)
+            f.requestCompleted = Integer.valueOf(0).equals(rs.getObject("request_open_items", Integer.class));
+            return f;
+        }, fulfillQty, requestItemId, fulfillQty);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    // ผลของ fulfillItemIfRemaining
+    public static class ItemFulfillment {
+        private RequestItem item;
+        private String orderId;
+        private boolean requestCompleted;
+
+        public RequestItem getItem() { return item; }
+
+        public String getOrderId() { return orderId; }
+
+        // true เมื่อทุกรายการของ Request เบิกครบแล้ว
+        public boolean isRequestCompleted() { return requestCompleted; }
+    }
+
+    public void updateItemFulfillments(Map<String, Integer> quantities) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(quantities.entrySet());
+        jdbcTemplate.batchUpdate(
+                "UPDATE requestitem SET fulfilled_qty = fulfilled_qty + ? WHERE request_item_id = ?",
+                entries,
+                entries.size(),
+                (ps, e) -> {
+                    ps.setInt(1, e.getValue());
+                    ps.setString(2, e.getKey());
+                }
+        );
     }
 
-    public boolean areAllItemsFulfilled(String requestId) { // รับ String
-        String sql = "SELECT COUNT(*) FROM requestitem WHERE request_id = ? AND remaining_qty > 0";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, requestId);
-        return count != null && count == 0;
+    // counts: request_id -> จำนวนรายการที่เพิ่งเบิกครบ
+    public void decrementOpenItems(Map<String, Integer> counts) {
+        List<Object[]> args = new ArrayList<>();
+        counts.forEach((requestId, n) -> args.add(new Object[]{n, requestId}));
+        jdbcTemplate.batchUpdate("UPDATE request SET open_items = open_items - ? WHERE request_id = ?", args);
     }
 
-    public void updateRequestStatus(String requestId, String status) { // รับ String
-        jdbcTemplate.update("UPDATE request SET status = ? WHERE request_id = ?", status, requestId);
+    // ลด open_requests ของ Order ตาม Request ที่เพิ่งถูกปิดใน CTE "closed"
+    private static final String DECREMENT_ORDER_OPEN_REQUESTS =
+            ", orders AS (" +
+            "  UPDATE \"Order\" o SET open_requests = o.open_requests - c.n" +
+            "  FROM (SELECT order_id, COUNT(*) AS n FROM closed WHERE order_id IS NOT NULL GROUP BY order_id) c" +
+            "  WHERE o.order_id = c.order_id" +
+            ") SELECT request_id FROM closed";
+
+    // ปิด Request ที่เบิกครบทุกรายการแล้ว (open_items = 0) ใน statement เดียวสำหรับหลาย Request; คืน request_id ที่ถูกปิด
+    public List<String> closeFullyFulfilled(Collection<String> requestIds) {
+        String sql = "WITH closed AS (" +
+                "  UPDATE request SET status = 'Closed' WHERE request_id = ANY (?) AND open_items = 0 AND status <> 'Closed'" +
+                "  RETURNING request_id, order_id" +
+                ")" + DECREMENT_ORDER_OPEN_REQUESTS;
+        return jdbcTemplate.query(sql, SqlArrays.varcharArray(requestIds), (rs, rowNum) -> rs.getString("request_id"));
+    }
+
+    // เปลี่ยนสถานะเฉพาะคำขอที่ยังรออนุมัติ; คืน false ถ้าไม่พบหรือสถานะเปลี่ยนไปแล้ว
+    public boolean updateStatusIfAwaiting(String requestId, String status, String approverId) {
+        return jdbcTemplate.update(
+                "UPDATE request SET status = ?, approved_by = ?, approved_date = NOW() WHERE request_id = ? AND status = 'Awaiting Approval'",
+                status, approverId, requestId) > 0;
     }
 
-    public void updateStatus(String requestId, String status, String approverId) { // รับ String
-        jdbcTemplate.update("UPDATE request SET status = ?, approved_by = ?, approved_date = NOW() WHERE request_id = ?", status, approverId, requestId);
+    // เปลี่ยนสถานะหลายคำขอใน UPDATE เดียว เฉพาะที่ยังรออนุมัติ; คืน request_id ที่เปลี่ยนสำเร็จ
+    public List<String> updateStatusIfAwaiting(Collection<String> requestIds, String status, String approverId) {
+        return jdbcTemplate.query(
+                "UPDATE request SET status = ?, approved_by = ?, approved_date = NOW() WHERE request_id = ANY (?) AND status = 'Awaiting Approval' RETURNING request_id",
+                ps -> {
+                    ps.setString(1, status);
+                    ps.setString(2, approverId);
+                    ps.setArray(3, ps.getConnection().createArrayOf("varchar", requestIds.toArray()));
+                },
+                (rs, rowNum) -> rs.getString("request_id"));
+    }
+
+    // คืนคำขอที่เพิ่งอนุมัติใน transaction นี้กลับเป็นรออนุมัติ (ใช้เมื่อจองไม่ได้หลังเปลี่ยนสถานะแล้ว)
+    public void revertApproval(Collection<String> requestIds) {
+        jdbcTemplate.update(
+                "UPDATE request SET status = 'Awaiting Approval', approved_by = NULL, approved_date = NULL WHERE request_id = ANY (?) AND status = 'Approved'",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", requestIds.toArray())));
     }
 
     public List<Request> findReadyToCloseRequests() {
-        String sql = "SELECT * FROM Request r WHERE r.status = 'Approved' AND NOT EXISTS (SELECT 1 FROM RequestItem ri WHERE ri.request_id = r.request_id AND ri.remaining_qty > 0)";
+        String sql = "SELECT * FROM Request r WHERE r.status = 'Approved' AND r.open_items = 0";
         return jdbcTemplate.query(sql, this::mapRow);
     }
 
-    public void closeRequest(String requestId, String staffId) { // รับ String
-        jdbcTemplate.update("UPDATE Request SET status = 'Closed' WHERE request_id = ?", requestId);
+    // ปิด Request ที่อนุมัติแล้วและเบิกครบ ครั้งละไม่เกิน limit แถว ข้ามแถวที่ถูก lock อยู่; คืน request_id ที่ถูกปิด
+    public List<String> closeReadyRequests(int limit) {
+        String sql = "WITH picked AS (" +
+                "  SELECT request_id FROM request WHERE status = 'Approved' AND open_items = 0" +
+                "  ORDER BY request_id LIMIT ? FOR UPDATE SKIP LOCKED" +
+                "), closed AS (" +
+                "  UPDATE request r SET status = 'Closed' FROM picked p WHERE r.request_id = p.request_id" +
+                "  RETURNING r.request_id, r.order_id" +
+                ")" + DECREMENT_ORDER_OPEN_REQUESTS;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("request_id"), limit);
+    }
+
+    // คืน false ถ้าไม่พบหรือปิดไปแล้ว
+    public boolean closeRequest(String requestId, String staffId) { // รับ String
+        String sql = "WITH closed AS (" +
+                "  UPDATE Request SET status = 'Closed' WHERE request_id = ? AND status <> 'Closed' RETURNING request_id, order_id" +
+                ")" + DECREMENT_ORDER_OPEN_REQUESTS;
+        return !jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("request_id"), requestId).isEmpty();
     }
 }
\ No newline at end of file
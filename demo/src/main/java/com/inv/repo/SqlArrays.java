@@ -0,0 +1,16 @@
+package com.inv.repo;
+
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.util.Collection;
+
+// ใช้กับ WHERE col = ANY (?) เพื่อส่ง ID หลายตัวเป็น array parameter เดียว (ไม่ต้องต่อ IN (?,?,...) เอง)
+final class SqlArrays {
+
+    private SqlArrays() {
+    }
+
+    static PreparedStatementSetter varcharArray(Collection<String> values) {
+        return ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", values.toArray()));
+    }
+}
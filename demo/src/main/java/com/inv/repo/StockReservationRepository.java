@@ -0,0 +1,64 @@
+package com.inv.repo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class StockReservationRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // request_id -> (product_id -> จำนวนที่จอง)
+    public Map<String, Map<String, Integer>> findAllByRequest() {
+        Map<String, Map<String, Integer>> result = new HashMap<>();
+        jdbcTemplate.query("SELECT request_id, product_id, quantity FROM StockReservation WHERE quantity > 0",
+                (RowCallbackHandler) rs -> result
+                        .computeIfAbsent(rs.getString("request_id"), k -> new HashMap<>())
+                        .put(rs.getString("product_id"), rs.getInt("quantity")));
+        return result;
+    }
+
+    public void saveAll(String requestId, Map<String, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>();
+        quantities.forEach((productId, qty) -> args.add(new Object[]{requestId, productId, qty}));
+        jdbcTemplate.batchUpdate("INSERT INTO StockReservation(request_id, product_id, quantity) VALUES (?, ?, ?)", args);
+    }
+
+    // quantities: request_id -> (product_id -> จำนวนที่จอง)
+    public void saveAll(Map<String, Map<String, Integer>> quantities) {
+        List<Object[]> args = new ArrayList<>();
+        quantities.forEach((requestId, byProduct) ->
+                byProduct.forEach((productId, qty) -> args.add(new Object[]{requestId, productId, qty})));
+        jdbcTemplate.batchUpdate("INSERT INTO StockReservation(request_id, product_id, quantity) VALUES (?, ?, ?)", args);
+    }
+
+    // ลดยอดจองเมื่อเบิกจริง (ไม่ต่ำกว่า 0)
+    public void consume(String requestId, String productId, int qty) {
+        jdbcTemplate.update("UPDATE StockReservation SET quantity = GREATEST(quantity - ?, 0) WHERE request_id = ? AND product_id = ?",
+                qty, requestId, productId);
+    }
+
+    // quantities: request_id -> (product_id -> จำนวนที่เบิก)
+    public void consumeAll(Map<String, Map<String, Integer>> quantities) {
+        List<Object[]> args = new ArrayList<>();
+        quantities.forEach((requestId, byProduct) ->
+                byProduct.forEach((productId, qty) -> args.add(new Object[]{qty, requestId, productId})));
+        jdbcTemplate.batchUpdate("UPDATE StockReservation SET quantity = GREATEST(quantity - ?, 0) WHERE request_id = ? AND product_id = ?", args);
+    }
+
+    public void deleteByRequest(String requestId) {
+        jdbcTemplate.update("DELETE FROM StockReservation WHERE request_id = ?", requestId);
+    }
+
+    public void deleteByRequests(List<String> requestIds) {
+        jdbcTemplate.update("DELETE FROM StockReservation WHERE request_id = ANY (?)", SqlArrays.varcharArray(requestIds));
+    }
+}
@@ -0,0 +1,144 @@
+package com.inv.repo;
+
+import com.inv.model.MovementRollup;
+import com.inv.model.StockTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+// ยอดเคลื่อนไหวรายวันที่รวมไว้ล่วงหน้า (StockDailyRollup ต่อสินค้า, StockDailyStaffRollup ต่อพนักงาน)
+// อัปเดตใน transaction เดียวกับการบันทึก StockTransaction; วันที่มาจาก clock_timestamp() เหมือน transaction_date
+@Repository
+public class StockRollupRepository {
+
+    private static final String UPSERT_PRODUCT = "INSERT INTO StockDailyRollup(day, product_id, type, quantity, transaction_count) " +
+            "VALUES (CAST(clock_timestamp() AS DATE), ?, ?, ?, ?) ON CONFLICT (day, product_id, type) DO UPDATE SET " +
+            "quantity = StockDailyRollup.quantity + EXCLUDED.quantity, " +
+            "transaction_count = StockDailyRollup.transaction_count + EXCLUDED.transaction_count";
+
+    private static final String UPSERT_STAFF = "INSERT INTO StockDailyStaffRollup(day, staff_id, type, quantity, transaction_count) " +
+            "VALUES (CAST(clock_timestamp() AS DATE), ?, ?, ?, ?) ON CONFLICT (day, staff_id, type) DO UPDATE SET " +
+            "quantity = StockDailyStaffRollup.quantity + EXCLUDED.quantity, " +
+            "transaction_count = StockDailyStaffRollup.transaction_count + EXCLUDED.transaction_count";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private record Key(String id, String type) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key o) {
+            int c = id.compareTo(o.id);
+            return c != 0 ? c : type.compareTo(o.type);
+        }
+    }
+
+    private MovementRollup mapRow(ResultSet rs, int rowNum) throws SQLException {
+        MovementRollup r = new MovementRollup();
+        r.setDay(rs.getDate("day").toLocalDate());
+        r.setKey(rs.getString("key"));
+        r.setType(rs.getString("type"));
+        r.setQuantity(rs.getLong("quantity"));
+        r.setTransactionCount(rs.getInt("transaction_count"));
+        return r;
+    }
+
+    // รวมยอดในหน่วยความจำก่อน แล้ว upsert เรียงตาม key เพื่อลดโอกาส deadlock
+    public void addAll(List<StockTransaction> transactions) {
+        upsert(UPSERT_PRODUCT, sum(transactions, StockTransaction::getProductId));
+        upsert(UPSERT_STAFF, sum(transactions, StockTransaction::getStaffId));
+    }
+
+    private static Map<Key, long[]> sum(List<StockTransaction> transactions, Function<StockTransaction, String> id) {
+        Map<Key, long[]> totals = new TreeMap<>();
+        for (StockTransaction t : transactions) {
+            long[] total = totals.computeIfAbsent(new Key(id.apply(t), t.getType()), k -> new long[2]);
+            total[0] += t.getQuantity();
+            total[1]++;
+        }
+        return totals;
+    }
+
+    private void upsert(String sql, Map<Key, long[]> totals) {
+        List<Map.Entry<Key, long[]>> entries = new ArrayList<>(totals.entrySet());
+        jdbcTemplate.batchUpdate(sql, entries, entries.size(), (ps, e) -> {
+            ps.setString(1, e.getKey().id());
+            ps.setString(2, e.getKey().type());
+            ps.setLong(3, e.getValue()[0]);
+            ps.setInt(4, (int) e.getValue()[1]);
+        });
+    }
+
+    // สร้างยอดของวัน day ใหม่จาก ledger (ใช้ตอน backfill); คืนจำนวนแถวของ StockDailyRollup
+    // วันของแต่ละรายการคือ CAST(transaction_date AS DATE) ซึ่งเท่ากับ CAST(clock_timestamp() AS DATE) ที่ upsert ใช้ตอนบันทึก
+    // ขอบเขตของวันคำนวณใน database (DATE เทียบกับ TIMESTAMP = เที่ยงคืนของวันนั้น) จึงไม่ขึ้นกับ time zone ของ JVM และยังใช้ index ของ transaction_date ได้
+    // ADJUST เก็บจำนวนแบบมีเครื่องหมาย: SUM ได้ยอดปรับสุทธิ เหมือนที่ upsert รวมไว้
+    // ON CONFLICT: upsert ของรายการที่บันทึกหลัง DELETE แทนที่ด้วยยอดจาก ledger แทนที่จะทำให้ทั้ง batch ล้ม
+    public int rebuildDay(LocalDate day) {
+        Date date = Date.valueOf(day);
+        jdbcTemplate.update("DELETE FROM StockDailyRollup WHERE day = ?", date);
+        jdbcTemplate.update("DELETE FROM StockDailyStaffRollup WHERE day = ?", date);
+        int rows = jdbcTemplate.update(
+                "INSERT INTO StockDailyRollup(day, product_id, type, quantity, transaction_count) " +
+                        "SELECT CAST(transaction_date AS DATE), product_id, type, SUM(quantity), COUNT(*) FROM StockTransaction " +
+                        "WHERE transaction_date >= CAST(? AS DATE) AND transaction_date < CAST(? AS DATE) + 1 " +
+                        "GROUP BY CAST(transaction_date AS DATE), product_id, type " +
+                        "ON CONFLICT (day, product_id, type) DO UPDATE SET " +
+                        "quantity = EXCLUDED.quantity, transaction_count = EXCLUDED.transaction_count",
+                date, date);
+        jdbcTemplate.update(
+                "INSERT INTO StockDailyStaffRollup(day, staff_id, type, quantity, transaction_count) " +
+                        "SELECT CAST(transaction_date AS DATE), staff_id, type, SUM(quantity), COUNT(*) FROM StockTransaction " +
+                        "WHERE transaction_date >= CAST(? AS DATE) AND transaction_date < CAST(? AS DATE) + 1 " +
+                        "GROUP BY CAST(transaction_date AS DATE), staff_id, type " +
+                        "ON CONFLICT (day, staff_id, type) DO UPDATE SET " +
+                        "quantity = EXCLUDED.quantity, transaction_count = EXCLUDED.transaction_count",
+                date, date);
+        return rows;
+    }
+
+    public LocalDate findFirstTransactionDay() {
+        Date first = jdbcTemplate.queryForObject("SELECT CAST(MIN(transaction_date) AS DATE) FROM StockTransaction", Date.class);
+        return first != null ? first.toLocalDate() : null;
+    }
+
+    // --- รายงาน (อ่านเฉพาะตาราง rollup) ---
+    public List<MovementRollup> findByProduct(LocalDate from, LocalDate to, String productId) {
+        if (productId != null) {
+            return jdbcTemplate.query(
+                    "SELECT day, product_id AS key, type, quantity, transaction_count FROM StockDailyRollup " +
+                            "WHERE product_id = ? AND day BETWEEN ? AND ? ORDER BY day, type",
+                    this::mapRow, productId, Date.valueOf(from), Date.valueOf(to));
+        }
+        return jdbcTemplate.query(
+                "SELECT day, product_id AS key, type, quantity, transaction_count FROM StockDailyRollup " +
+                        "WHERE day BETWEEN ? AND ? ORDER BY day, product_id, type",
+                this::mapRow, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    public List<MovementRollup> findByStaff(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(
+                "SELECT day, staff_id AS key, type, quantity, transaction_count FROM StockDailyStaffRollup " +
+                        "WHERE day BETWEEN ? AND ? ORDER BY day, staff_id, type",
+                this::mapRow, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    // ต่อผู้จำหน่ายของสินค้า (สินค้าที่ไม่ระบุผู้จำหน่ายจะไม่ถูกนับ)
+    public List<MovementRollup> findBySupplier(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(
+                "SELECT r.day, p.supplier_id AS key, r.type, SUM(r.quantity) AS quantity, SUM(r.transaction_count) AS transaction_count " +
+                        "FROM StockDailyRollup r JOIN Product p ON p.product_id = r.product_id " +
+                        "WHERE p.supplier_id IS NOT NULL AND r.day BETWEEN ? AND ? " +
+                        "GROUP BY r.day, p.supplier_id, r.type ORDER BY r.day, p.supplier_id, r.type",
+                this::mapRow, Date.valueOf(from), Date.valueOf(to));
+    }
+}
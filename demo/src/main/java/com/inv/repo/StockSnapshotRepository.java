@@ -0,0 +1,63 @@
+package com.inv.repo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class StockSnapshotRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // เวลาปัจจุบันจริงของ database (clock_timestamp ไม่ใช่เวลาเริ่ม transaction; นาฬิกาเดียวกับ transaction_date ของ StockTransaction)
+    // ใน transaction แบบ REPEATABLE READ คำสั่งแรกนี้กำหนด snapshot ที่ saveSnapshot อ่าน: แถว ledger ที่ commit แล้วตอนนั้นมีเวลาก่อนค่านี้
+    public LocalDateTime currentTimestamp() {
+        return jdbcTemplate.queryForObject("SELECT clock_timestamp()::timestamp", Timestamp.class).toLocalDateTime();
+    }
+
+    // บันทึกยอดคงเหลือของทุกสินค้า ณ snapshotAt; คืนจำนวนแถวที่บันทึก
+    public int saveSnapshot(LocalDateTime snapshotAt) {
+        return jdbcTemplate.update(
+                "INSERT INTO StockSnapshot(snapshot_at, product_id, quantity) SELECT ?, product_id, quantity FROM Product",
+                Timestamp.valueOf(snapshotAt)
+        );
+    }
+
+    public LocalDateTime findLatestAtOrBefore(LocalDateTime at) {
+        Timestamp ts = jdbcTemplate.queryForObject("SELECT MAX(snapshot_at) FROM StockSnapshot WHERE snapshot_at <= ?", Timestamp.class, Timestamp.valueOf(at));
+        return ts != null ? ts.toLocalDateTime() : null;
+    }
+
+    public LocalDateTime findEarliestAfter(LocalDateTime at) {
+        Timestamp ts = jdbcTemplate.queryForObject("SELECT MIN(snapshot_at) FROM StockSnapshot WHERE snapshot_at > ?", Timestamp.class, Timestamp.valueOf(at));
+        return ts != null ? ts.toLocalDateTime() : null;
+    }
+
+    // คืน 0 ถ้าสินค้ายังไม่มีใน snapshot นั้น (สร้างหลัง snapshot โดยเริ่มที่ 0)
+    public int findQuantity(LocalDateTime snapshotAt, String productId) {
+        List<Integer> list = jdbcTemplate.query(
+                "SELECT quantity FROM StockSnapshot WHERE snapshot_at = ? AND product_id = ?",
+                (rs, rowNum) -> rs.getInt("quantity"),
+                Timestamp.valueOf(snapshotAt), productId
+        );
+        return list.isEmpty() ? 0 : list.get(0);
+    }
+
+    public Map<String, Integer> findQuantities(LocalDateTime snapshotAt) {
+        Map<String, Integer> result = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT product_id, quantity FROM StockSnapshot WHERE snapshot_at = ?",
+                (RowCallbackHandler) rs -> result.put(rs.getString("product_id"), rs.getInt("quantity")),
+                Timestamp.valueOf(snapshotAt)
+        );
+        return result;
+    }
+}
@@ -1,17 +1,37 @@
 package com.inv.repo;
 
 import com.inv.model.StockTransaction;
+import com.inv.model.StockTransactionFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Repository
 public class StockTransactionRepository {
 
+    // จำนวนแถวที่ดึงจาก database ต่อรอบเมื่อ stream ทั้ง ledger
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    // transaction_date = เวลาที่ INSERT จริง (clock_timestamp) ไม่ใช่เวลาเริ่ม transaction
+    private static final String INSERT_SQL = "INSERT INTO StockTransaction(transaction_id, transaction_date, type, product_id, quantity, staff_id, description) " +
+            "VALUES (?, clock_timestamp(), ?, ?, ?, ?, ?)";
+
+    // IN บวก, OUT ลบ, ADJUST เก็บจำนวนแบบมีเครื่องหมายอยู่แล้ว
+    private static final String NET_QUANTITY = "CASE WHEN type = 'OUT' THEN -quantity ELSE quantity END";
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
@@ -30,7 +50,7 @@ public class StockTransactionRepository {
     public void save(StockTransaction transaction) {
         // แก้ไข: เพิ่ม transaction_id และเปลี่ยน reference เป็น description
         jdbcTemplate.update(
-                "INSERT INTO StockTransaction(transaction_id, type, product_id, quantity, staff_id, description) VALUES (?, ?, ?, ?, ?, ?)",
+                INSERT_SQL,
                 transaction.getTransactionId(),
                 transaction.getType(),
                 transaction.getProductId(),
@@ -40,7 +60,119 @@ public class StockTransactionRepository {
         );
     }
 
-    public List<StockTransaction> findAll() {
-        return jdbcTemplate.query("SELECT * FROM StockTransaction ORDER BY transaction_date DESC", this::mapRow);
+    public void saveAll(List<StockTransaction> transactions) {
+        jdbcTemplate.batchUpdate(
+                INSERT_SQL,
+                transactions,
+                transactions.size(),
+                (ps, t) -> {
+                    ps.setString(1, t.getTransactionId());
+                    ps.setString(2, t.getType());
+                    ps.setString(3, t.getProductId());
+                    ps.setInt(4, t.getQuantity());
+                    ps.setString(5, t.getStaffId());
+                    ps.setString(6, t.getDescription());
+                }
+        );
+    }
+
+    // keyset pagination เรียงจากใหม่ไปเก่าบน (transaction_date, transaction_id)
+    // afterDate/afterId คือคีย์ของแถวสุดท้ายในหน้าก่อน (null สำหรับหน้าแรก)
+    public List<StockTransaction> findPage(StockTransactionFilter filter, LocalDateTime afterDate, String afterId, int limit) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM StockTransaction WHERE 1=1");
+        appendFilter(sql, params, filter);
+        if (afterDate != null) {
+            sql.append(" AND (transaction_date, transaction_id) < (?, ?)");
+            params.add(Timestamp.valueOf(afterDate));
+            params.add(afterId);
+        }
+        sql.append(" ORDER BY transaction_date DESC, transaction_id DESC LIMIT ?");
+        params.add(limit);
+        return jdbcTemplate.query(sql.toString(), this::mapRow, params.toArray());
+    }
+
+    // อ่านทุกแถวตามเงื่อนไขแบบ cursor ฝั่ง database (ต้องเรียกภายใน transaction เพื่อให้ fetch size มีผล)
+    public void streamAll(StockTransactionFilter filter, Consumer<StockTransaction> consumer) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM StockTransaction WHERE 1=1");
+        appendFilter(sql, params, filter);
+        sql.append(" ORDER BY transaction_date DESC, transaction_id DESC");
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapRow(rs, rs.getRow())));
+    }
+
+    // ผลรวมการเคลื่อนไหวสุทธิ (IN บวก, OUT ลบ, ADJUST ตามเครื่องหมาย) ในช่วง (after, upTo]; upTo เป็น null = ถึงปัจจุบัน
+    public int sumNetMovement(String productId, LocalDateTime after, LocalDateTime upTo) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COALESCE(SUM(" + NET_QUANTITY + "), 0) FROM StockTransaction WHERE product_id = ?");
+        params.add(productId);
+        appendRange(sql, params, after, upTo);
+        Integer sum = jdbcTemplate.queryForObject(sql.toString(), Integer.class, params.toArray());
+        return sum != null ? sum : 0;
+    }
+
+    public Map<String, Integer> sumNetMovementByProduct(LocalDateTime after, LocalDateTime upTo) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT product_id, SUM(" + NET_QUANTITY + ") AS net FROM StockTransaction WHERE 1=1");
+        appendRange(sql, params, after, upTo);
+        sql.append(" GROUP BY product_id");
+        Map<String, Integer> result = new HashMap<>();
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> result.put(rs.getString("product_id"), rs.getInt("net")), params.toArray());
+        return result;
+    }
+
+    // ยอดรวมรายวันต่อสินค้าของรายการประเภท type ตั้งแต่วัน from (query เดียว ส่งทีละแถวไม่เก็บทั้งชุด)
+    public void forEachDailyTotal(String type, LocalDate from, DailyTotalHandler handler) {
+        jdbcTemplate.query(
+                "SELECT product_id, CAST(transaction_date AS DATE) AS day, SUM(quantity) AS total FROM StockTransaction " +
+                        "WHERE type = ? AND transaction_date >= ? GROUP BY product_id, CAST(transaction_date AS DATE)",
+                (RowCallbackHandler) rs -> handler.accept(rs.getString("product_id"), rs.getDate("day").toLocalDate(), rs.getInt("total")),
+                type, Timestamp.valueOf(from.atStartOfDay())
+        );
+    }
+
+    public interface DailyTotalHandler {
+        void accept(String productId, LocalDate day, int total);
+    }
+
+    private void appendRange(StringBuilder sql, List<Object> params, LocalDateTime after, LocalDateTime upTo) {
+        if (after != null) {
+            sql.append(" AND transaction_date > ?");
+            params.add(Timestamp.valueOf(after));
+        }
+        if (upTo != null) {
+            sql.append(" AND transaction_date <= ?");
+            params.add(Timestamp.valueOf(upTo));
+        }
+    }
+
+    private void appendFilter(StringBuilder sql, List<Object> params, StockTransactionFilter filter) {
+        if (filter.getProductId() != null) {
+            sql.append(" AND product_id = ?");
+            params.add(filter.getProductId());
+        }
+        if (filter.getStaffId() != null) {
+            sql.append(" AND staff_id = ?");
+            params.add(filter.getStaffId());
+        }
+        if (filter.getType() != null) {
+            sql.append(" AND type = ?");
+            params.add(filter.getType());
+        }
+        if (filter.getFrom() != null) {
+            sql.append(" AND transaction_date >= ?");
+            params.add(Timestamp.valueOf(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            sql.append(" AND transaction_date < ?");
+            params.add(Timestamp.valueOf(filter.getTo()));
+        }
     }
 }
\ No newline at end of file
@@ -1,13 +1,21 @@
 package com.inv.repo;
 
+import com.inv.model.PageResult;
 import com.inv.model.Supplier;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Repository
 public class SupplierRepository {
@@ -15,6 +23,10 @@ public class SupplierRepository {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    // sort: id, name
+    private final KeysetPager<Supplier> pager = new KeysetPager<Supplier>("Supplier", "supplier_id", Supplier::getSupplierId, this::mapRow, "name")
+            .sortKey("name", "supplier_name", v -> v, Supplier::getSupplierName);
+
     private Supplier mapRow(ResultSet rs, int rowNum) throws SQLException {
         Supplier s = new Supplier();
         s.setSupplierId(rs.getString("supplier_id")); // rs.getString
@@ -22,11 +34,12 @@ public class SupplierRepository {
         s.setAddress(rs.getString("address")); // แก้ไข: schema ใหม่ใช้ address
         s.setPhone(rs.getString("phone"));     // แก้ไข: schema ใหม่ใช้ phone
         s.setEmail(rs.getString("email"));
+        s.setLeadTimeDays((Integer) rs.getObject("lead_time_days"));
         return s;
     }
 
-    public List<Supplier> findAll() {
-        return jdbcTemplate.query("SELECT * FROM Supplier", this::mapRow);
+    public PageResult<Supplier> findPage(String sort, String cursor, int limit) {
+        return pager.page(jdbcTemplate, sort, cursor, limit);
     }
 
     public Supplier findById(String id) { // รับ String id
@@ -43,16 +56,46 @@ public class SupplierRepository {
         return list.isEmpty() ? null : list.get(0);
     }
 
+    // ค่าใน emails ที่มีอยู่แล้วในตาราง (query เดียว)
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return new HashSet<>(jdbcTemplate.query("SELECT email FROM Supplier WHERE email = ANY (?)",
+                SqlArrays.varcharArray(emails), (rs, rowNum) -> rs.getString("email")));
+    }
+
+    // insert ทั้งหมดใน JDBC batch เดียว; แถวที่อีเมลชนกับข้อมูลที่เพิ่งถูกเพิ่มจะถูกข้าม (ค่าใน array เป็น 0)
+    public int[] saveAll(List<Supplier> suppliers) {
+        List<Object[]> args = new ArrayList<>(suppliers.size());
+        for (Supplier s : suppliers) {
+            args.add(new Object[]{s.getSupplierId(), s.getSupplierName(), s.getAddress(), s.getPhone(), s.getEmail(), s.getLeadTimeDays()});
+        }
+        return jdbcTemplate.batchUpdate(
+                "INSERT INTO Supplier(supplier_id, supplier_name, address, phone, email, lead_time_days) VALUES (?,?,?,?,?,?) ON CONFLICT DO NOTHING",
+                args);
+    }
+
     // แก้ไข: save ไม่ return ค่าแล้ว และเพิ่ม supplier_id ในการ insert
     public void save(Supplier s) {
-        String sql = "INSERT INTO Supplier(supplier_id, supplier_name, address, phone, email) VALUES (?,?,?,?,?)";
+        String sql = "INSERT INTO Supplier(supplier_id, supplier_name, address, phone, email, lead_time_days) VALUES (?,?,?,?,?,?)";
         jdbcTemplate.update(
                 sql,
                 s.getSupplierId(),
                 s.getSupplierName(),
                 s.getAddress(),
                 s.getPhone(),
-                s.getEmail()
+                s.getEmail(),
+                s.getLeadTimeDays()
         );
     }
+
+    public boolean updateLeadTime(String supplierId, Integer leadTimeDays) {
+        return jdbcTemplate.update("UPDATE Supplier SET lead_time_days = ? WHERE supplier_id = ?", leadTimeDays, supplierId) > 0;
+    }
+
+    // supplier_id -> lead_time_days เฉพาะผู้จำหน่ายที่กำหนดไว้
+    public Map<String, Integer> findLeadTimes() {
+        Map<String, Integer> result = new HashMap<>();
+        jdbcTemplate.query("SELECT supplier_id, lead_time_days FROM Supplier WHERE lead_time_days IS NOT NULL",
+                (RowCallbackHandler) rs -> result.put(rs.getString("supplier_id"), rs.getInt("lead_time_days")));
+        return result;
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.inv.repo;
 
+import com.inv.model.PageResult;
 import com.inv.model.Staff;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -15,6 +16,11 @@ public class UserRepository {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    // sort: id, name, role
+    private final KeysetPager<Staff> pager = new KeysetPager<Staff>("Staff", "staff_id", Staff::getStaffId, this::mapRow, "name")
+            .sortKey("name", "staff_name", v -> v, Staff::getStaffName)
+            .sortKey("role", "role", v -> v, Staff::getRole);
+
     private Staff mapRow(ResultSet rs, int rowNum) throws SQLException {
         Staff s = new Staff();
         s.setStaffId(rs.getString("staff_id")); // rs.getString
@@ -27,8 +33,8 @@ public class UserRepository {
         return s;
     }
 
-    public List<Staff> findAll() {
-        return jdbcTemplate.query("SELECT * FROM Staff ORDER BY staff_name", this::mapRow);
+    public PageResult<Staff> findPage(String sort, String cursor, int limit) {
+        return pager.page(jdbcTemplate, sort, cursor, limit);
     }
 
     public Staff findByEmail(String email) {
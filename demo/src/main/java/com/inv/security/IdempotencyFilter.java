@@ -0,0 +1,226 @@
+package com.inv.security;
+
+import com.inv.model.IdempotencyRecord;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+
+// รองรับ header Idempotency-Key บน endpoint ที่เขียนข้อมูล: request ที่ส่ง key เดิมซ้ำ (เช่นเครื่องสแกน retry
+// หลังเน็ตหลุด) จะได้ response เดิมกลับไปโดยไม่เรียก service ซ้ำ key แยกตามพนักงานที่ login
+// ต้องอยู่หลัง JwtFilter ใน SecurityFilterChain (ดู SecurityConfig)
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    @Autowired
+    private IdempotencyStore store;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${idempotency.paths:/stock/in,/stock/fulfill,/stock/fulfill/batch,/orders}")
+    private Set<String> paths;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(HEADER) == null
+                || !paths.contains(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            // ให้ Spring Security ตอบ 401/403 ตามปกติ
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String key = request.getHeader(HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Idempotency-Key ต้องมีความยาว 1-" + MAX_KEY_LENGTH + " ตัวอักษร");
+            return;
+        }
+        String staffId = auth.getName();
+        String method = request.getMethod();
+        String path = request.getServletPath();
+        // body ของ endpoint เหล่านี้เป็น JSON ขนาดเล็ก อ่านเก็บไว้ทั้งก้อนเพื่อคำนวณ hash แล้วส่งต่อให้ controller
+        byte[] body = request.getInputStream().readAllBytes();
+        String requestHash = sha256(body);
+
+        IdempotencyRecord existing = store.find(staffId, key);
+        if (existing == null) {
+            existing = execute(new CachedBodyRequest(request, body), response, filterChain, staffId, key, method, path, requestHash);
+            if (existing == null) {
+                return;
+            }
+        }
+
+        if (!method.equals(existing.getMethod()) || !path.equals(existing.getPath())
+                || (existing.getRequestHash() != null && !existing.getRequestHash().equals(requestHash))) {
+            response.sendError(422, "Idempotency-Key นี้ถูกใช้กับ request อื่นแล้ว");
+            return;
+        }
+        if (!existing.isCompleted()) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, "request ที่ใช้ Idempotency-Key นี้กำลังประมวลผลอยู่");
+            return;
+        }
+        replay(response, existing);
+    }
+
+    // จอง key, เรียก controller และบันทึก response ใน transaction เดียวกัน (service ที่เป็น @Transactional จะร่วม transaction นี้)
+    // ผลที่ไม่สำเร็จ rollback ทั้งหมดรวมถึงการจอง key จึงไม่มีช่วงที่ข้อมูล commit แล้วแต่ key ถูกปล่อยให้ retry ทำซ้ำ
+    // คืน null เมื่อประมวลผลเอง หรือ record ของ request อื่นที่ใช้ key นี้ commit ไปก่อน
+    private IdempotencyRecord execute(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                                      String staffId, String key, String method, String path,
+                                      String requestHash) throws ServletException, IOException {
+        TransactionStatus tx = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+        try {
+            if (!store.claim(staffId, key, method, path, requestHash)) {
+                transactionManager.rollback(tx);
+                IdempotencyRecord existing = store.find(staffId, key);
+                if (existing == null) {
+                    response.sendError(HttpServletResponse.SC_CONFLICT, "request ที่ใช้ Idempotency-Key นี้กำลังประมวลผลอยู่");
+                }
+                return existing;
+            }
+            ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+            filterChain.doFilter(request, wrapper);
+            // เก็บเฉพาะผลที่สำเร็จ: error อาจเกิดจากสถานะชั่วคราว (เช่นของไม่พอ) retry ควรได้ลองใหม่
+            int status = wrapper.getStatus();
+            if (status >= 200 && status < 300) {
+                store.complete(staffId, key,
+                        new IdempotencyRecord(method, path, requestHash, status, wrapper.getContentType(), wrapper.getContentAsByteArray()));
+                transactionManager.commit(tx);
+            } else {
+                transactionManager.rollback(tx);
+            }
+            // ส่ง response หลัง commit สำเร็จเท่านั้น
+            wrapper.copyBodyToResponse();
+            return null;
+        } catch (RuntimeException | Error | ServletException | IOException e) {
+            if (!tx.isCompleted()) {
+                transactionManager.rollback(tx);
+            }
+            throw e;
+        }
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyRecord record) throws IOException {
+        response.setStatus(record.getStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (record.getContentType() != null) {
+            response.setContentType(record.getContentType());
+        }
+        byte[] body = record.getBody();
+        if (body != null && body.length > 0) {
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+
+    // ส่ง body ที่อ่านไว้แล้วให้ controller อ่านซ้ำได้
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // body อยู่ในหน่วยความจำทั้งหมดแล้ว จึงพร้อมอ่านทันทีและจบในรอบเดียว
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.inv.security;
+
+import com.inv.model.IdempotencyRecord;
+import com.inv.repo.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// เก็บ response ตาม Idempotency-Key: cache ในหน่วยความจำ (LRU จำกัดจำนวน + หมดอายุ) และตาราง IdempotencyKey
+// ตารางใช้จอง key ข้าม instance/restart และเป็นที่อ่านสำรองเมื่อ cache ไม่มี
+// claim/complete ต้องเรียกภายใน transaction เดียวกับการเขียนข้อมูลของ request (ดู IdempotencyFilter)
+@Component
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    @Autowired
+    private IdempotencyKeyRepository repository;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private int ttlHours;
+    @Value("${idempotency.cache.max-entries:10000}")
+    private int maxEntries;
+
+    private static final class Entry {
+        final IdempotencyRecord record;
+        final long expiresAt;
+
+        Entry(IdempotencyRecord record, long expiresAt) {
+            this.record = record;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // access-order: ตัวที่ไม่ถูกใช้นานที่สุดถูกทิ้งก่อนเมื่อเกิน maxEntries
+    private final Map<String, Entry> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    // คืน response ที่เสร็จแล้ว, record ที่ completed = false ถ้ากำลังประมวลผล หรือ null ถ้ายังไม่เคยเห็น key นี้
+    public IdempotencyRecord find(String staffId, String key) {
+        String cacheKey = staffId + ':' + key;
+        synchronized (cache) {
+            Entry entry = cache.get(cacheKey);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    return entry.record;
+                }
+                cache.remove(cacheKey);
+            }
+        }
+        IdempotencyRecord record = repository.find(staffId, key);
+        if (record != null && record.isCompleted()) {
+            put(cacheKey, record);
+        }
+        return record;
+    }
+
+    public boolean claim(String staffId, String key, String method, String path, String requestHash) {
+        return repository.claim(staffId, key, method, path, requestHash);
+    }
+
+    // เข้า cache หลัง commit เท่านั้น: ถ้า transaction rollback key นี้ต้องประมวลผลใหม่ได้
+    public void complete(String staffId, String key, IdempotencyRecord record) {
+        repository.complete(staffId, key, record);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(staffId + ':' + key, record);
+            }
+        });
+    }
+
+    private void put(String cacheKey, IdempotencyRecord record) {
+        long expiresAt = System.currentTimeMillis() + ttlHours * 3_600_000L;
+        synchronized (cache) {
+            cache.put(cacheKey, new Entry(record, expiresAt));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-ms:3600000}", initialDelayString = "${idempotency.cleanup-ms:3600000}")
+    public void cleanup() {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            cache.values().removeIf(e -> e.expiresAt <= now);
+        }
+        try {
+            int rows = repository.deleteExpired(ttlHours);
+            log.info("Idempotency cleanup: {} keys removed", rows);
+        } catch (RuntimeException e) {
+            log.warn("Idempotency cleanup failed: {}", e.getMessage());
+        }
+    }
+}
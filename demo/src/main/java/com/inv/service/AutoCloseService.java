@@ -0,0 +1,103 @@
+package com.inv.service;
+
+import com.inv.event.WorkQueueChangedEvent;
+import com.inv.model.AutoCloseResult;
+import com.inv.repo.OrderRepository;
+import com.inv.repo.ProductRepository;
+import com.inv.repo.RequestRepository;
+import com.inv.repo.StockReservationRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// ปิด Request ที่เบิกครบ แล้วปิด Order ที่ส่งครบและไม่มีคำขอเบิกค้าง (open_requests = 0) แทนการกดปิดทีละรายการ
+// แต่ละ chunk เป็น transaction ของตัวเอง เพื่อไม่ถือ lock นาน
+@Service
+public class AutoCloseService {
+
+    private static final Logger log = LoggerFactory.getLogger(AutoCloseService.class);
+
+    @Autowired
+    private RequestRepository requestRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private StockReservationRepository reservationRepository;
+    @Autowired
+    private ReservationEngine reservationEngine;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${close.auto.chunk-size:500}")
+    private int chunkSize;
+
+    // chunk-size < 1 ทำให้ loop ด้านล่างไม่มีวันจบ: ให้ application ไม่เริ่มทำงานแทน
+    @PostConstruct
+    void validate() {
+        if (chunkSize < 1) {
+            throw new IllegalStateException("close.auto.chunk-size must be >= 1 but was " + chunkSize);
+        }
+    }
+
+    // ค่าเริ่มต้น: ทุก 1 นาที
+    @Scheduled(fixedDelayString = "${close.auto.delay-ms:60000}", initialDelayString = "${close.auto.delay-ms:60000}")
+    public void scheduledClose() {
+        try {
+            closeReady();
+        } catch (RuntimeException e) {
+            log.warn("Auto close failed: {}", e.getMessage());
+        }
+    }
+
+    public AutoCloseResult closeReady() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        int requestsClosed = 0;
+        while (true) {
+            List<String> closed = tx.execute(status -> {
+                List<String> ids = requestRepository.closeReadyRequests(chunkSize);
+                if (!ids.isEmpty()) {
+                    reservationRepository.deleteByRequests(ids);
+                    long txId = productRepository.currentTransactionId();
+                    TransactionHooks.afterCommit(() -> ids.forEach(requestId -> reservationEngine.release(requestId, txId)));
+                }
+                return ids;
+            });
+            closed.forEach(requestId -> RequestService.publishClosed(eventPublisher, requestId));
+            requestsClosed += closed.size();
+            if (closed.size() < chunkSize) {
+                break;
+            }
+        }
+
+        // ปิด Order หลัง Request เพื่อให้ open_requests ที่เพิ่งลดลงมีผลในรอบเดียวกัน
+        int ordersClosed = 0;
+        while (true) {
+            List<String> closed = tx.execute(status -> orderRepository.closeReadyOrders(chunkSize));
+            closed.forEach(orderId -> eventPublisher.publishEvent(
+                    new WorkQueueChangedEvent(WorkQueueChangedEvent.READY_TO_CLOSE_ORDERS, WorkQueueChangedEvent.REMOVED, orderId)));
+            ordersClosed += closed.size();
+            if (closed.size() < chunkSize) {
+                break;
+            }
+        }
+
+        if (requestsClosed > 0 || ordersClosed > 0) {
+            log.info("Auto close: {} requests, {} orders", requestsClosed, ordersClosed);
+        }
+        return new AutoCloseResult(requestsClosed, ordersClosed);
+    }
+}
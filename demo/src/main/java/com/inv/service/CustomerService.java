@@ -1,23 +1,44 @@
 package com.inv.service;
 
+import com.inv.model.BulkResult;
 import com.inv.model.Customer;
+import com.inv.model.PageResult;
 import com.inv.repo.CustomerRepository;
+import com.inv.util.CsvReader;
+import com.inv.util.IdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID; // Import เพิ่ม
+import java.util.Set;
 
 @Service
 public class CustomerService {
 
+    private static final Logger log = LoggerFactory.getLogger(CustomerService.class);
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
     @Autowired
     private CustomerRepository customerRepository;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
-    public List<Customer> getAllCustomers() {
-        return customerRepository.findAll();
+    @Transactional(readOnly = true)
+    public PageResult<Customer> getCustomers(String sort, String cursor, int limit) {
+        return Pages.fetch(limit, () -> customerRepository.findPage(sort, cursor, limit));
     }
 
     public Customer getCustomerById(String id) { // รับ String id
@@ -43,10 +64,144 @@ public class CustomerService {
         }
 
         // เพิ่ม: สร้าง ID ที่นี่
-        String customerId = "CUS-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        String customerId = idGenerator.next("CUS-");
         customer.setCustomerId(customerId);
 
         customerRepository.save(customer);
         return customer;
     }
-}
\ No newline at end of file
+
+    // นำเข้าลูกค้าจาก CSV แบบ stream: customerName,address,phone,email (บรรทัดหัวตารางเป็น optional)
+    // ตรวจเบอร์/อีเมลซ้ำภายในไฟล์ด้วย Set และซ้ำกับในระบบด้วย query เดียวต่อ batch แทนการ query ทีละแถว
+    // แต่ละ batch commit แยกกัน; batch ที่บันทึกไม่สำเร็จจะรายงานเป็น error รายบรรทัด
+    public BulkResult importCustomers(BufferedReader reader) throws IOException {
+        BulkResult result = new BulkResult();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<CustomerLine> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        Set<String> seenPhones = new HashSet<>();
+        Set<String> seenEmails = new HashSet<>();
+        CsvReader csv = new CsvReader(reader);
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            int lineNumber = csv.getLineNumber();
+            if (csv.isFirstRecord() && "customerName".equalsIgnoreCase(fields.get(0))) {
+                continue; // ข้ามหัวตาราง
+            }
+            Customer customer = new Customer();
+            customer.setCustomerName(CsvReader.field(fields, 0));
+            customer.setAddress(CsvReader.field(fields, 1));
+            customer.setPhone(CsvReader.field(fields, 2));
+            customer.setEmail(CsvReader.field(fields, 3));
+
+            String error = validateLine(customer);
+            if (error != null) {
+                result.error(lineNumber, error);
+                continue;
+            }
+            if (customer.getPhone() != null && !seenPhones.add(customer.getPhone())) {
+                result.error(lineNumber, "เบอร์โทรศัพท์ซ้ำกับบรรทัดก่อนหน้าในไฟล์");
+                continue;
+            }
+            if (customer.getEmail() != null && !seenEmails.add(customer.getEmail())) {
+                result.error(lineNumber, "อีเมลซ้ำกับบรรทัดก่อนหน้าในไฟล์");
+                continue;
+            }
+            batch.add(new CustomerLine(lineNumber, customer));
+            if (batch.size() >= IMPORT_BATCH_SIZE) {
+                flushCustomers(tx, batch, result);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushCustomers(tx, batch, result);
+        }
+        return result;
+    }
+
+    // ตรวจค่าตามข้อจำกัดของตาราง Customer ก่อน batch insert (แถวที่ยาวเกินจะทำให้ batch ล้มทั้งชุด)
+    private String validateLine(Customer customer) {
+        if (customer.getCustomerName() == null) {
+            return "กรุณาระบุชื่อลูกค้า (Customer name is required)";
+        }
+        if (customer.getCustomerName().length() > 100) {
+            return "ชื่อลูกค้ายาวเกิน 100 ตัวอักษร";
+        }
+        if (customer.getAddress() != null && customer.getAddress().length() > 200) {
+            return "ที่อยู่ยาวเกิน 200 ตัวอักษร";
+        }
+        if (customer.getPhone() != null && customer.getPhone().length() > 20) {
+            return "เบอร์โทรศัพท์ยาวเกิน 20 ตัวอักษร";
+        }
+        if (customer.getEmail() != null && customer.getEmail().length() > 100) {
+            return "อีเมลยาวเกิน 100 ตัวอักษร";
+        }
+        return null;
+    }
+
+    private void flushCustomers(TransactionTemplate tx, List<CustomerLine> batch, BulkResult result) {
+        BulkResult chunk = new BulkResult();
+        try {
+            tx.executeWithoutResult(status -> saveCustomers(batch, chunk));
+        } catch (RuntimeException e) {
+            // batch นี้ rollback ทั้งหมด: รายงานทุกบรรทัดเพื่อให้ส่งใหม่ได้
+            log.warn("Customer import batch of {} lines failed: {}", batch.size(), e.getMessage());
+            batch.forEach(line -> result.error(line.lineNumber, "บันทึกไม่สำเร็จ กรุณาส่งบรรทัดนี้ใหม่"));
+            return;
+        }
+        for (int i = 0; i < chunk.getSucceeded(); i++) {
+            result.success();
+        }
+        chunk.getErrors().forEach(error -> result.error(error.getLine(), error.getMessage()));
+    }
+
+    private void saveCustomers(List<CustomerLine> batch, BulkResult result) {
+        Set<String> phones = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (CustomerLine line : batch) {
+            if (line.customer.getPhone() != null) {
+                phones.add(line.customer.getPhone());
+            }
+            if (line.customer.getEmail() != null) {
+                emails.add(line.customer.getEmail());
+            }
+        }
+        Set<String> existingPhones = phones.isEmpty() ? Set.of() : customerRepository.findExistingPhones(phones);
+        Set<String> existingEmails = emails.isEmpty() ? Set.of() : customerRepository.findExistingEmails(emails);
+
+        List<CustomerLine> accepted = new ArrayList<>(batch.size());
+        for (CustomerLine line : batch) {
+            if (line.customer.getPhone() != null && existingPhones.contains(line.customer.getPhone())) {
+                result.error(line.lineNumber, "เบอร์โทรศัพท์นี้มีในระบบแล้ว (Phone number already exists)");
+                continue;
+            }
+            if (line.customer.getEmail() != null && existingEmails.contains(line.customer.getEmail())) {
+                result.error(line.lineNumber, "อีเมลนี้มีในระบบแล้ว (Email already exists)");
+                continue;
+            }
+            line.customer.setCustomerId(idGenerator.next("CUS-"));
+            accepted.add(line);
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        int[] counts = customerRepository.saveAll(accepted.stream().map(l -> l.customer).toList());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) { // อีเมลถูกเพิ่มเข้ามาหลังตรวจ (ON CONFLICT DO NOTHING)
+                result.error(accepted.get(i).lineNumber, "อีเมลนี้มีในระบบแล้ว (Email already exists)");
+            } else {
+                result.success();
+            }
+        }
+    }
+
+    // หนึ่งบรรทัดของการนำเข้าลูกค้า
+    private static class CustomerLine {
+        final int lineNumber;
+        final Customer customer;
+
+        CustomerLine(int lineNumber, Customer customer) {
+            this.lineNumber = lineNumber;
+            this.customer = customer;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.inv.service;
+
+import com.inv.event.StockTransactionsRecordedEvent;
+import com.inv.model.StockTransaction;
+import com.inv.repo.ProductRepository;
+import com.inv.repo.StockRollupRepository;
+import com.inv.repo.StockTransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// จุดเดียวที่บันทึก StockTransaction (พร้อมยอด rollup รายวันใน transaction เดียวกัน)
+// โหมดปกติ: INSERT ทันทีใน transaction ของผู้เรียก
+// โหมด batch (stock.ledger.batch.enabled=true): สะสมแถวของ transaction เดียวกันไว้
+// แล้ว INSERT เป็น JDBC batch เดียวก่อน commit (หรือเมื่อครบ max-size) ผ่าน connection ของผู้เรียกเสมอ
+// แถว ledger จึง commit/rollback พร้อมกับการเปลี่ยนสต็อกที่คู่กันเท่านั้น ไม่รวมแถวข้าม transaction
+// (การรวม fsync ของหลาย commit ให้ PostgreSQL ทำเองผ่าน commit_delay/commit_siblings)
+@Component
+public class LedgerWriter {
+
+    @Autowired
+    private StockTransactionRepository stockTransactionRepository;
+    @Autowired
+    private StockRollupRepository stockRollupRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${stock.ledger.batch.enabled:false}")
+    private boolean batching;
+    @Value("${stock.ledger.batch.max-size:500}")
+    private int maxBatch;
+
+    // แถวที่รอ INSERT ของ transaction ปัจจุบัน (ผูกไว้กับ transaction ผ่าน TransactionSynchronizationManager)
+    private final class Buffer implements TransactionSynchronization {
+        final List<StockTransaction> rows = new ArrayList<>();
+
+        void add(List<StockTransaction> transactions) {
+            rows.addAll(transactions);
+            if (rows.size() >= maxBatch) {
+                insertPending();
+            }
+        }
+
+        void insertPending() {
+            if (!rows.isEmpty()) {
+                insert(rows);
+                rows.clear();
+            }
+        }
+
+        // ถ้า INSERT ไม่สำเร็จ exception จะทำให้ transaction ของผู้เรียก rollback ทั้งหมด
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            insertPending();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LedgerWriter.this);
+        }
+    }
+
+    public void record(StockTransaction transaction) {
+        recordAll(List.of(transaction));
+    }
+
+    public void recordAll(List<StockTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        eventPublisher.publishEvent(new StockTransactionsRecordedEvent(transactions, productRepository.currentTransactionId()));
+        if (!batching || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(transactions);
+            return;
+        }
+        Buffer buffer = (Buffer) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            buffer = new Buffer();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        buffer.add(transactions);
+    }
+
+    private void insert(List<StockTransaction> transactions) {
+        if (transactions.size() == 1) {
+            stockTransactionRepository.save(transactions.get(0));
+        } else {
+            stockTransactionRepository.saveAll(transactions);
+        }
+        stockRollupRepository.addAll(transactions);
+    }
+}
@@ -1,60 +1,143 @@
 package com.inv.service;
 
+import com.inv.event.WorkQueueChangedEvent;
 import com.inv.model.Order;
 import com.inv.model.OrderItem;
+import com.inv.model.PageResult;
 import com.inv.repo.OrderRepository;
+import com.inv.repo.ProductRepository;
+import com.inv.util.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID; // Import เพิ่ม
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
 
     @Autowired
     private OrderRepository orderRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private ResourceVersions resourceVersions;
 
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    // อ่านจาก replica ได้: ETag ของ endpoint นี้คำนวณจากข้อมูลที่คืน (ResourceVersions.contentEtag)
+    @Transactional(readOnly = true)
+    public PageResult<Order> getOrders(String sort, String cursor, int limit, boolean includeItems) {
+        PageResult<Order> page = Pages.fetch(limit, () -> orderRepository.findPage(sort, cursor, limit));
+        if (includeItems) {
+            attachItems(page.getItems());
+        }
+        return page;
     }
 
+    // เติม items ให้ทุก Order ด้วย query เดียว แล้วจับคู่ในหน่วยความจำ
+    public List<Order> attachItems(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return orders;
+        }
+        List<String> orderIds = orders.stream().map(Order::getOrderId).collect(Collectors.toList());
+        Map<String, List<OrderItem>> byOrder = orderRepository.findItemsByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderItem::getOrderId));
+        for (Order order : orders) {
+            order.setItems(byOrder.getOrDefault(order.getOrderId(), new ArrayList<>()));
+        }
+        return orders;
+    }
+
+    // ราคาต่อหน่วย ยอดต่อรายการ และยอดรวม คำนวณจากราคาสินค้าในระบบ (ไม่ใช้ค่าที่ client ส่งมา)
     @Transactional
     public String createOrder(Order order, List<OrderItem> items, String staffId) { // return String
-        String orderId = "ORD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        order.setOrderId(orderId);
-        order.setStaffId(staffId);
-        orderRepository.save(order);
+        if (items == null || items.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "กรุณาระบุรายการสินค้า");
+        }
+        Set<String> productIds = new HashSet<>();
+        for (OrderItem item : items) {
+            if (item.getProductId() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "กรุณาระบุสินค้า (productId is required)");
+            }
+            if (item.getQuantity() <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "จำนวนสินค้าต้องมากกว่า 0: " + item.getProductId());
+            }
+            // การเบิกตามคำสั่งซื้อหา OrderItem จาก productId จึงมีได้บรรทัดเดียวต่อสินค้า
+            if (!productIds.add(item.getProductId())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "มีสินค้าซ้ำในคำสั่งซื้อ: " + item.getProductId());
+            }
+        }
+
+        // ดึงราคาทุกสินค้าใน query เดียว
+        Map<String, BigDecimal> prices = productRepository.findPricesByIds(productIds);
+        productIds.removeAll(prices.keySet());
+        if (!productIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบสินค้า: " + String.join(", ", productIds));
+        }
 
+        String orderId = idGenerator.next("ORD-");
+        BigDecimal totalAmount = BigDecimal.ZERO;
         for (OrderItem item : items) {
-            String orderItemId = "ITM-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-            item.setOrderItemId(orderItemId);
+            BigDecimal unitPrice = prices.get(item.getProductId());
+            if (unitPrice == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "สินค้ายังไม่ได้กำหนดราคา: " + item.getProductId());
+            }
+            BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(item.getQuantity())).setScale(2, RoundingMode.HALF_UP);
+            item.setOrderItemId(idGenerator.next("ITM-"));
             item.setOrderId(orderId);
-            orderRepository.saveOrderItem(item);
+            item.setUnitPrice(unitPrice);
+            item.setLineTotal(lineTotal);
+            item.setFulfilledQty(0);
+            item.setRemainingQty(item.getQuantity());
+            totalAmount = totalAmount.add(lineTotal);
         }
+
+        order.setOrderId(orderId);
+        order.setStaffId(staffId);
+        order.setTotalAmount(totalAmount);
+        order.setOpenItems(items.size());
+        orderRepository.save(order);
+        orderRepository.saveOrderItems(items);
+        resourceVersions.bumpAfterCommit(ResourceVersions.ORDERS);
         return orderId;
     }
 
-    public List<Order> getConfirmedOrders() {
-        return orderRepository.findConfirmedOrders();
+    public List<Order> getConfirmedOrders(boolean includeItems) {
+        List<Order> orders = orderRepository.findConfirmedOrders();
+        return includeItems ? attachItems(orders) : orders;
     }
 
     public List<OrderItem> getItemsByOrderId(String orderId) { // รับ String orderId
         return orderRepository.findItemsByOrderId(orderId);
     }
 
-    public List<Order> getOrdersReadyToClose() {
-        return orderRepository.findOrdersReadyToClose();
+    public List<Order> getOrdersReadyToClose(boolean includeItems) {
+        List<Order> orders = orderRepository.findOrdersReadyToClose();
+        return includeItems ? attachItems(orders) : orders;
     }
 
     @Transactional
     public void closeOrder(String orderId, String staffId) { // รับ String IDs
-        if (orderRepository.hasPendingRequests(orderId)) {
+        // ตรวจ open_requests ใน UPDATE เดียวกัน แทนการ COUNT คำขอเบิกก่อนปิด
+        if (!orderRepository.closeOrder(orderId, staffId)) {
+            if (orderRepository.findById(orderId) == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบ Order ที่ระบุ");
+            }
             throw new ResponseStatusException(HttpStatus.CONFLICT, "ยังมีคำขอเบิกสินค้าที่ยังค้างอยู่ ไม่สามารถปิด Order ได้");
         }
-        orderRepository.closeOrder(orderId, staffId);
+        eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.READY_TO_CLOSE_ORDERS, WorkQueueChangedEvent.REMOVED, orderId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.inv.service;
+
+import com.inv.model.PageResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.function.Supplier;
+
+// ตรวจ limit และแปลง sort/cursor ที่ไม่ถูกต้อง (IllegalArgumentException จาก KeysetPager) เป็น 400
+final class Pages {
+
+    static final int MAX_LIMIT = 500;
+
+    private Pages() {
+    }
+
+    static <T> PageResult<T> fetch(int limit, Supplier<PageResult<T>> query) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit ต้องอยู่ระหว่าง 1 ถึง " + MAX_LIMIT);
+        }
+        try {
+            return query.get();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
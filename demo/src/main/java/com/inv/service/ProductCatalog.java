@@ -0,0 +1,246 @@
+package com.inv.service;
+
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.model.CatalogStats;
+import com.inv.model.PageResult;
+import com.inv.model.Product;
+import com.inv.repo.DbSnapshot;
+import com.inv.repo.ProductRepository;
+import com.inv.util.KeysetCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// รายการสินค้าทั้งหมดในหน่วยความจำ สำหรับ GET /products และ /products/{id}
+// ข้อมูลเป็น snapshot แบบ copy-on-write: ผู้อ่านไม่ต้อง lock และห้ามแก้ไข Product ที่ได้ไป
+// quantity อัปเดตจาก StockLevelChangedEvent หลัง commit; การสร้างสินค้าใหม่ทำให้โหลดใหม่ทั้งชุด
+// แต่ละชุดจำ snapshot ของ database ที่ใช้โหลด: event ของ transaction ที่ snapshot นั้นเห็นแล้วจะไม่ถูกบวกซ้ำ
+// (ลำดับตามชื่อใช้ collation ของ database จึงไม่เรียงเองใน Java)
+@Component
+public class ProductCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalog.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ResourceVersions resourceVersions;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${product.cache.max-size:50000}")
+    private int maxSize;
+
+    private static final class View {
+        final Product[] sorted;               // เรียงตาม product_name
+        final Map<String, Integer> indexById; // product_id -> ตำแหน่งใน sorted
+        final List<Product> list;
+        final DbSnapshot snapshot;
+        final LocalDateTime loadedAt;
+
+        View(Product[] sorted, Map<String, Integer> indexById, DbSnapshot snapshot, LocalDateTime loadedAt) {
+            this.sorted = sorted;
+            this.indexById = indexById;
+            this.list = Collections.unmodifiableList(Arrays.asList(sorted));
+            this.snapshot = snapshot;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    // null = ยังไม่โหลด หรือถูก invalidate
+    private volatile View view;
+    // false เมื่อจำนวนสินค้าเกิน maxSize: อ่านจาก database ตรง
+    private volatile boolean enabled = true;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    public List<Product> getAll() {
+        View v = current();
+        if (v == null) {
+            misses.incrementAndGet();
+            return productRepository.findAll();
+        }
+        hits.incrementAndGet();
+        return v.list;
+    }
+
+    // หน้าของรายการเรียงตามชื่อ (sort = name / -name) จาก snapshot ด้วย cursor รูปแบบเดียวกับ ProductRepository.findPage
+    // คืน null ถ้าตอบจาก cache ไม่ได้ (sort อื่น, cache ปิดอยู่ หรือสินค้าใน cursor ไม่อยู่ใน snapshot)
+    public PageResult<Product> pageByName(String sort, String cursor, int limit) {
+        String sortParam = sort == null || sort.isEmpty() ? "name" : sort;
+        boolean desc = sortParam.equals("-name");
+        if (!desc && !sortParam.equals("name")) {
+            return null;
+        }
+        View v = current();
+        if (v == null) {
+            return null;
+        }
+        int start = desc ? v.sorted.length - 1 : 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] last;
+            try {
+                last = KeysetCursor.decode(cursor, 3);
+            } catch (IllegalArgumentException e) {
+                return null; // ให้ query ฝั่ง database ตรวจและแจ้ง error
+            }
+            Integer index = v.indexById.get(last[2]);
+            if (!last[0].equals(sortParam) || index == null || !v.sorted[index].getProductName().equals(last[1])) {
+                return null;
+            }
+            start = desc ? index - 1 : index + 1;
+        }
+        hits.incrementAndGet();
+
+        List<Product> items = new ArrayList<>(Math.min(limit, v.sorted.length));
+        int step = desc ? -1 : 1;
+        int i = start;
+        for (; i >= 0 && i < v.sorted.length && items.size() < limit; i += step) {
+            items.add(v.sorted[i]);
+        }
+        String nextCursor = null;
+        if (i >= 0 && i < v.sorted.length && !items.isEmpty()) {
+            Product lastItem = items.get(items.size() - 1);
+            nextCursor = KeysetCursor.encode(sortParam, lastItem.getProductName(), lastItem.getProductId());
+        }
+        return new PageResult<>(items, nextCursor);
+    }
+
+    public Product get(String productId) {
+        View v = current();
+        Integer index = v != null ? v.indexById.get(productId) : null;
+        if (index == null) {
+            // สินค้าที่เพิ่งสร้างนอกระบบหรือไม่มีอยู่จริง: ถาม database
+            misses.incrementAndGet();
+            return productRepository.findById(productId);
+        }
+        hits.incrementAndGet();
+        return v.sorted[index];
+    }
+
+    // ทิ้ง snapshot ปัจจุบัน ให้โหลดใหม่ตอนอ่านครั้งถัดไป
+    public synchronized void invalidate() {
+        view = null;
+        enabled = true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockLevelChanged(StockLevelChangedEvent event) {
+        synchronized (this) {
+            View v = view;
+            if (v == null) {
+                return; // จะอ่านยอดล่าสุดจาก database ตอนโหลด
+            }
+            Integer index = v.indexById.get(event.getProductId());
+            if (index == null || v.snapshot.includes(event.getTxId())) {
+                return; // findAll ตอนโหลดเห็นยอดหลัง commit นี้แล้ว
+            }
+            // สำเนา array (copy reference อย่างเดียว) แล้วแทนที่เฉพาะสินค้าที่เปลี่ยน
+            Product[] sorted = v.sorted.clone();
+            Product updated = copyOf(sorted[index]);
+            updated.setQuantity(updated.getQuantity() + event.getDelta());
+            sorted[index] = updated;
+            view = new View(sorted, v.indexById, v.snapshot, v.loadedAt);
+        }
+        updates.incrementAndGet();
+    }
+
+    // โหลดใหม่เป็นระยะ เพื่อแก้ค่าคลาดเคลื่อนจากการแก้ไขนอกระบบ
+    @Scheduled(fixedDelayString = "${product.cache.refresh-ms:600000}", initialDelayString = "${product.cache.refresh-ms:600000}")
+    public void refresh() {
+        if (view == null && enabled) {
+            return; // ยังไม่มีใครอ่าน ไม่ต้องโหลดล่วงหน้า
+        }
+        try {
+            load();
+        } catch (RuntimeException e) {
+            log.warn("Product catalogue refresh failed: {}", e.getMessage());
+        }
+    }
+
+    public CatalogStats getStats() {
+        View v = view;
+        CatalogStats stats = new CatalogStats();
+        stats.setEnabled(enabled);
+        stats.setSize(v != null ? v.sorted.length : 0);
+        stats.setMaxSize(maxSize);
+        stats.setHits(hits.get());
+        stats.setMisses(misses.get());
+        stats.setLoads(loads.get());
+        stats.setUpdates(updates.get());
+        stats.setLoadedAt(v != null ? v.loadedAt : null);
+        return stats;
+    }
+
+    private View current() {
+        View v = view;
+        if (v == null && enabled) {
+            synchronized (this) {
+                if (view == null && enabled) {
+                    load();
+                }
+                v = view;
+            }
+        }
+        return v;
+    }
+
+    private synchronized void load() {
+        // snapshot และรายการสินค้าต้องมาจาก snapshot เดียวกัน จึงอ่านใน transaction แบบ REPEATABLE READ (ไม่ใช่ readOnly: cache ต้องโหลดจาก primary)
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        DbSnapshot[] snapshot = new DbSnapshot[1];
+        List<Product> products = tx.execute(status -> {
+            snapshot[0] = productRepository.currentSnapshot();
+            return productRepository.findAll();
+        });
+        loads.incrementAndGet();
+        if (products.size() > maxSize) {
+            log.warn("Product catalogue has {} products (max {}), serving from database", products.size(), maxSize);
+            view = null;
+            enabled = false;
+            return;
+        }
+        Product[] sorted = products.toArray(new Product[0]);
+        Map<String, Integer> indexById = new HashMap<>(sorted.length * 2);
+        for (int i = 0; i < sorted.length; i++) {
+            indexById.put(sorted[i].getProductId(), i);
+        }
+        view = new View(sorted, Collections.unmodifiableMap(indexById), snapshot[0], LocalDateTime.now());
+        enabled = true;
+        // ข้อมูลที่โหลดใหม่อาจมีการแก้ไขนอกระบบ
+        resourceVersions.bump(ResourceVersions.PRODUCTS);
+    }
+
+    private static Product copyOf(Product p) {
+        Product copy = new Product();
+        copy.setProductId(p.getProductId());
+        copy.setProductName(p.getProductName());
+        copy.setDescription(p.getDescription());
+        copy.setUnit(p.getUnit());
+        copy.setPricePerUnit(p.getPricePerUnit());
+        copy.setSupplierId(p.getSupplierId());
+        copy.setQuantity(p.getQuantity());
+        copy.setImageUrl(p.getImageUrl());
+        return copy;
+    }
+}
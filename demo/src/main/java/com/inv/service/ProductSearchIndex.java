@@ -0,0 +1,295 @@
+package com.inv.service;
+
+import com.inv.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// ค้นหาสินค้าจาก product_name, description และ supplier_id ด้วย index ในหน่วยความจำ
+// ภาษาไทยไม่มีช่องว่างระหว่างคำ จึงใช้ n-gram ของตัวอักษร (1 ตัวและ 2 ตัวติดกัน) แทนการตัดคำ:
+// หาเอกสารที่มีทุก bigram ของคำค้นจาก posting list แล้วตรวจ substring จริงก่อนให้คะแนน
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // เอกสารเรียงตามลำดับที่เพิ่ม; doc id คือ index ใน list ทำให้ posting list เรียงอยู่แล้วเมื่อ append
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<String, Postings> grams = new HashMap<>();
+    private volatile boolean built;
+
+    private static final class Doc {
+        final String productId;
+        final String name;
+        final String description;
+        final String supplierId;
+
+        Doc(Product p) {
+            this.productId = p.getProductId();
+            this.name = normalize(p.getProductName());
+            this.description = normalize(p.getDescription());
+            this.supplierId = normalize(p.getSupplierId());
+        }
+    }
+
+    // posting list แบบ int array ที่ขยายได้ (ไม่ box เป็น Integer)
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private static final class Hit {
+        final int doc;
+        final int score;
+
+        Hit(int doc, int score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+
+    // คืนสินค้าที่ตรงกับทุกคำใน query (คั่นด้วยช่องว่าง) เรียงตามคะแนน สูงสุด limit รายการ
+    public List<Product> search(String query, int limit) {
+        String[] terms = normalize(query).split(" ");
+        List<String> nonEmpty = new ArrayList<>();
+        for (String term : terms) {
+            if (!term.isEmpty()) {
+                nonEmpty.add(term);
+            }
+        }
+        if (nonEmpty.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ensureBuilt();
+
+        // Hit ที่คะแนนต่ำสุดอยู่หัว heap เพื่อเก็บแค่ top-N
+        Comparator<Hit> worstFirst = Comparator.<Hit>comparingInt(h -> h.score)
+                .thenComparing(h -> docs.get(h.doc).name, Comparator.reverseOrder());
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, worstFirst);
+        lock.readLock().lock();
+        try {
+            int[] candidates = candidates(nonEmpty);
+            for (int id : candidates) {
+                Doc doc = docs.get(id);
+                int score = 0;
+                for (String term : nonEmpty) {
+                    int s = score(doc, term);
+                    if (s == 0) {
+                        score = 0;
+                        break;
+                    }
+                    score += s;
+                }
+                if (score > 0) {
+                    top.add(new Hit(id, score));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(worstFirst.reversed());
+            List<Product> results = new ArrayList<>(hits.size());
+            for (Hit hit : hits) {
+                // อ่าน Product จาก catalogue เพื่อให้ได้ quantity ล่าสุด
+                Product product = productCatalog.get(docs.get(hit.doc).productId);
+                if (product != null) {
+                    results.add(product);
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // เพิ่มสินค้าใหม่เข้า index โดยไม่ต้องสร้างใหม่ทั้งหมด
+    public void add(Product product) {
+        if (!built) {
+            return; // จะถูกรวมตอนสร้าง index ครั้งแรก
+        }
+        lock.writeLock().lock();
+        try {
+            addDoc(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // สร้างใหม่เป็นระยะ เพื่อรวมการแก้ไขนอกระบบ
+    @Scheduled(fixedDelayString = "${product.search.rebuild-ms:600000}", initialDelayString = "${product.search.rebuild-ms:600000}")
+    public void rebuild() {
+        if (!built) {
+            return;
+        }
+        try {
+            build();
+        } catch (RuntimeException e) {
+            log.warn("Product search index rebuild failed: {}", e.getMessage());
+        }
+    }
+
+    private void ensureBuilt() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    build();
+                }
+            }
+        }
+    }
+
+    private void build() {
+        List<Product> products = productCatalog.getAll();
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            grams.clear();
+            for (Product product : products) {
+                addDoc(product);
+            }
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product search index built: {} products, {} grams", products.size(), grams.size());
+    }
+
+    private void addDoc(Product product) {
+        int id = docs.size();
+        Doc doc = new Doc(product);
+        docs.add(doc);
+        indexText(id, doc.name);
+        indexText(id, doc.description);
+        indexText(id, doc.supplierId);
+    }
+
+    private void indexText(int id, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            grams.computeIfAbsent(String.valueOf(c), k -> new Postings()).add(id);
+            if (i + 1 < text.length() && text.charAt(i + 1) != ' ') {
+                grams.computeIfAbsent(text.substring(i, i + 2), k -> new Postings()).add(id);
+            }
+        }
+    }
+
+    // intersection ของ posting list ทุก gram ในทุกคำ เริ่มจาก list ที่สั้นที่สุด
+    private int[] candidates(List<String> terms) {
+        List<Postings> lists = new ArrayList<>();
+        for (String term : terms) {
+            if (term.length() == 1) {
+                lists.add(grams.get(term));
+            } else {
+                for (int i = 0; i + 1 < term.length(); i++) {
+                    lists.add(grams.get(term.substring(i, i + 2)));
+                }
+            }
+        }
+        if (lists.contains(null)) {
+            return new int[0];
+        }
+        lists.sort(Comparator.comparingInt(p -> p.size));
+        int[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int n = result.length;
+        for (int l = 1; l < lists.size() && n > 0; l++) {
+            Postings other = lists.get(l);
+            int i = 0, j = 0, k = 0;
+            while (i < n && j < other.size) {
+                if (result[i] < other.ids[j]) {
+                    i++;
+                } else if (result[i] > other.ids[j]) {
+                    j++;
+                } else {
+                    result[k++] = result[i];
+                    i++;
+                    j++;
+                }
+            }
+            n = k;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    // คะแนนของคำค้นหนึ่งคำ: ชื่อตรงทั้งหมด > ขึ้นต้นชื่อ > ขึ้นต้นคำในชื่อ > อยู่ในชื่อ > supplier > รายละเอียด
+    private static int score(Doc doc, String term) {
+        if (doc.name.equals(term)) {
+            return 100;
+        }
+        if (doc.name.startsWith(term)) {
+            return 80;
+        }
+        int index = doc.name.indexOf(term);
+        if (index > 0 && doc.name.charAt(index - 1) == ' ') {
+            return 60;
+        }
+        if (index > 0) {
+            return 40;
+        }
+        if (doc.supplierId.contains(term)) {
+            return 20;
+        }
+        if (doc.description.contains(term)) {
+            return 10;
+        }
+        return 0;
+    }
+
+    // ตัวพิมพ์เล็ก, NFKC, เก็บเฉพาะตัวอักษร/ตัวเลข/สระและวรรณยุกต์ (ไทยใช้ combining mark) อย่างอื่นเป็นช่องว่าง
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String s = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean space = true;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            int type = Character.getType(c);
+            if (Character.isLetterOrDigit(c) || type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK) {
+                sb.append(c);
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int len = sb.length();
+        if (len > 0 && sb.charAt(len - 1) == ' ') {
+            sb.setLength(len - 1);
+        }
+        return sb.toString();
+    }
+}
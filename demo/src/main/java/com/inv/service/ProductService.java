@@ -1,42 +1,246 @@
 package com.inv.service;
 
+import com.inv.event.ProductPriceChangedEvent;
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.model.BulkResult;
+import com.inv.model.CatalogStats;
+import com.inv.model.ImportProgress;
+import com.inv.model.PageResult;
 import com.inv.model.Product;
+import com.inv.model.StockTransaction;
+import com.inv.repo.ProductImportStaging;
 import com.inv.repo.ProductRepository;
+import com.inv.util.CsvReader;
+import com.inv.util.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Comparator;
 import java.util.List;
-import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 public class ProductService {
 
+    private static final int MAX_SEARCH_RESULTS = 100;
+    private static final int IMPORT_CHUNK_SIZE = 10000;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("100000000"); // DECIMAL(10,2)
+
     @Autowired
     private ProductRepository productRepository;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private ProductCatalog productCatalog;
+    @Autowired
+    private ResourceVersions resourceVersions;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private LedgerWriter ledgerWriter;
 
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    // เรียงตามชื่อ: อ่านจาก cache ในหน่วยความจำ (ห้ามแก้ไข Product ที่ได้กลับไป) ถ้าทำได้ นอกนั้น query แบบ keyset
+    public PageResult<Product> getProducts(String sort, String cursor, int limit) {
+        return Pages.fetch(limit, () -> {
+            PageResult<Product> cached = productCatalog.pageByName(sort, cursor, limit);
+            return cached != null ? cached : productRepository.findPage(sort, cursor, limit);
+        });
     }
 
     public Product getProductById(String id) { // รับ String id
-        return productRepository.findById(id);
+        return productCatalog.get(id);
+    }
+
+    public List<Product> searchProducts(String query, int limit) {
+        if (limit <= 0 || limit > MAX_SEARCH_RESULTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit ต้องอยู่ระหว่าง 1 ถึง " + MAX_SEARCH_RESULTS);
+        }
+        return productSearchIndex.search(query, limit);
+    }
+
+    public CatalogStats getCatalogStats() {
+        return productCatalog.getStats();
     }
 
     public Product createProduct(Product product) {
         // ... (Validation เดิม)
 
         // เพิ่ม: สร้าง ID ที่นี่
-        String productId = "PROD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        String productId = idGenerator.next("PROD-");
         product.setProductId(productId);
 
         productRepository.save(product);
+        TransactionHooks.afterCommit(productCatalog::invalidate);
+        TransactionHooks.afterCommit(() -> productSearchIndex.add(product));
+        resourceVersions.bumpAfterCommit(ResourceVersions.PRODUCTS);
         return product;
     }
 
-    public void adjustQuantity(String productId, int diff) { // รับ String productId
+    // นำเข้าแคตตาล็อกสินค้าจาก CSV แบบ stream: productName,description,unit,pricePerUnit,supplierId,imageUrl (บรรทัดหัวตารางเป็น optional)
+    // แต่ละ chunk: COPY เข้าตารางพัก -> ตัดแถวที่ supplier ไม่มีในระบบด้วย statement เดียว -> INSERT ... SELECT เข้า product
+    // แต่ละ chunk เป็น transaction ของตัวเอง และส่งความคืบหน้าพร้อม error ของ chunk นั้นให้ progress ทันที จึงใช้ memory คงที่
+    public void importProducts(BufferedReader reader, Consumer<ImportProgress> progress) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        ImportProgress total = new ImportProgress();
+        try {
+            boolean more = true;
+            while (more) {
+                BulkResult chunk = new BulkResult();
+                try {
+                    more = tx.execute(status -> importChunk(csv, chunk));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                total.add(chunk);
+                progress.accept(total);
+            }
+        } finally {
+            if (total.getSucceeded() > 0) {
+                productCatalog.invalidate();
+                productSearchIndex.rebuild();
+                resourceVersions.bump(ResourceVersions.PRODUCTS);
+            }
+        }
+        total.setErrors(List.of());
+        total.setDone(true);
+        progress.accept(total);
+    }
+
+    // อ่านได้ไม่เกิน IMPORT_CHUNK_SIZE บรรทัด; คืน false เมื่ออ่านจนจบไฟล์
+    private boolean importChunk(CsvReader csv, BulkResult chunk) {
+        ProductImportStaging staging = productRepository.openImportStaging();
+        boolean more = true;
+        try {
+            int rows = 0;
+            while (rows < IMPORT_CHUNK_SIZE) {
+                List<String> fields = csv.next();
+                if (fields == null) {
+                    more = false;
+                    break;
+                }
+                int lineNumber = csv.getLineNumber();
+                if (csv.isFirstRecord() && "productName".equalsIgnoreCase(fields.get(0))) {
+                    continue; // ข้ามหัวตาราง
+                }
+                rows++;
+                Product product = new Product();
+                String error = parseProductLine(fields, product);
+                if (error != null) {
+                    chunk.error(lineNumber, error);
+                    continue;
+                }
+                product.setProductId(idGenerator.next("PROD-"));
+                staging.add(lineNumber, product);
+            }
+            staging.finish();
+        } catch (IOException e) {
+            staging.cancel();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            staging.cancel();
+            throw e;
+        }
+
+        staging.removeUnknownSuppliers().forEach((line, supplierId) -> chunk.error(line, "ไม่พบผู้จำหน่าย " + supplierId));
+        int imported = staging.merge();
+        for (int i = 0; i < imported; i++) {
+            chunk.success();
+        }
+        chunk.getErrors().sort(Comparator.comparingInt(BulkResult.RowError::getLine));
+        return more;
+    }
+
+    // ตรวจค่าตามข้อจำกัดของตาราง product ก่อนส่งเข้า COPY (แถวที่ผิดจะทำให้ COPY ล้มทั้ง chunk)
+    private String parseProductLine(List<String> fields, Product product) {
+        product.setProductName(CsvReader.field(fields, 0));
+        product.setDescription(CsvReader.field(fields, 1));
+        product.setUnit(CsvReader.field(fields, 2));
+        product.setSupplierId(CsvReader.field(fields, 4));
+        product.setImageUrl(CsvReader.field(fields, 5));
+        if (product.getProductName() == null) {
+            return "กรุณาระบุชื่อสินค้า (Product name is required)";
+        }
+        if (product.getProductName().length() > 100) {
+            return "ชื่อสินค้ายาวเกิน 100 ตัวอักษร";
+        }
+        if (product.getUnit() != null && product.getUnit().length() > 50) {
+            return "หน่วยยาวเกิน 50 ตัวอักษร";
+        }
+        if (product.getSupplierId() != null && product.getSupplierId().length() > 20) {
+            return "ไม่พบผู้จำหน่าย " + product.getSupplierId();
+        }
+        if (product.getImageUrl() != null && product.getImageUrl().length() > 255) {
+            return "imageUrl ยาวเกิน 255 ตัวอักษร";
+        }
+        String price = CsvReader.field(fields, 3);
+        if (price != null) {
+            BigDecimal pricePerUnit;
+            try {
+                pricePerUnit = new BigDecimal(price).setScale(2, RoundingMode.HALF_UP);
+            } catch (NumberFormatException e) {
+                return "ราคาต่อหน่วยไม่ถูกต้อง: " + price;
+            }
+            if (pricePerUnit.signum() <= 0 || pricePerUnit.compareTo(MAX_PRICE) >= 0) {
+                return "ราคาต่อหน่วยต้องมากกว่า 0 และน้อยกว่า " + MAX_PRICE.toPlainString();
+            }
+            product.setPricePerUnit(pricePerUnit);
+        }
+        return null;
+    }
+
+    public void updatePrice(String productId, BigDecimal pricePerUnit) {
+        BigDecimal price = pricePerUnit != null ? pricePerUnit.setScale(2, RoundingMode.HALF_UP) : null;
+        if (price == null || price.signum() <= 0 || price.compareTo(MAX_PRICE) >= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ราคาต่อหน่วยต้องมากกว่า 0 และน้อยกว่า " + MAX_PRICE.toPlainString());
+        }
+        if (!productRepository.updatePrice(productId, price)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบสินค้า: " + productId);
+        }
+        eventPublisher.publishEvent(new ProductPriceChangedEvent(productId, price));
+        TransactionHooks.afterCommit(productCatalog::invalidate);
+        resourceVersions.bumpAfterCommit(ResourceVersions.PRODUCTS);
+    }
+
+    // ปรับยอดด้วยมือ: บันทึก ADJUST ลง ledger ด้วย (จำนวนมีเครื่องหมาย: บวก = เพิ่ม, ลบ = ลด)
+    @Transactional
+    public void adjustQuantity(String productId, int diff, String staffId) { // รับ String productId
+        if (diff == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "จำนวนที่ปรับต้องไม่เป็น 0");
+        }
+        if (productRepository.findById(productId) == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบสินค้าที่ระบุ");
+        }
         productRepository.updateQuantity(productId, diff);
+        // UPDATE ถือ lock ของแถว product แล้ว: ห้ามปรับลดจนเหลือน้อยกว่ายอดที่จองไว้ให้คำขอที่อนุมัติแล้ว
+        if (diff < 0 && !productRepository.findOverReserved(List.of(productId)).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "ปรับลดสต็อกจนน้อยกว่ายอดที่จองไว้ไม่ได้");
+        }
+
+        StockTransaction transaction = new StockTransaction();
+        transaction.setTransactionId(idGenerator.next("ST-"));
+        transaction.setType("ADJUST");
+        transaction.setProductId(productId);
+        transaction.setQuantity(diff);
+        transaction.setStaffId(staffId);
+        transaction.setDescription("Manual adjustment");
+        ledgerWriter.record(transaction);
+        eventPublisher.publishEvent(new StockLevelChangedEvent(productId, diff, productRepository.currentTransactionId()));
     }
 }
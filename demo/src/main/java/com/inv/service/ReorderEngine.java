@@ -0,0 +1,335 @@
+package com.inv.service;
+
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.event.StockTransactionsRecordedEvent;
+import com.inv.event.WorkQueueChangedEvent;
+import com.inv.model.LowStockItem;
+import com.inv.model.Product;
+import com.inv.model.StockTransaction;
+import com.inv.repo.DbSnapshot;
+import com.inv.repo.ProductRepository;
+import com.inv.repo.StockTransactionRepository;
+import com.inv.repo.SupplierRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// จุดสั่งซื้อซ้ำ (reorder point) ของสินค้าจากอัตราการเบิกออก (OUT) ใน ledger
+// เก็บยอด OUT รายวันของแต่ละสินค้าเป็น ring buffer ขนาด window วันพร้อมผลรวม: รายการใหม่และการเลื่อนวันเป็น O(1)
+// โดยไม่ scan ledger ซ้ำ (โหลดจาก database ด้วย query รวมยอดรายวันครั้งเดียว และโหลดใหม่เมื่อขึ้นวันใหม่)
+// reorder point = ยอดเบิกเฉลี่ยต่อวัน x (lead time ของผู้จำหน่าย + safety days); available <= reorder point ถือว่าใกล้หมด
+// สินค้าที่ไม่มีการเบิกใน window จะไม่ถูกแจ้งเตือน; แจ้งเตือนผ่านคิว low-stock ของ WorkQueueFeed
+// รายการ OUT ระบุด้วย xid: ตัดทิ้งถ้า snapshot ที่ใช้โหลดเห็น transaction นั้นแล้ว รายการที่ commit ระหว่างโหลดเก็บไว้ใช้ซ้ำหลังโหลด
+// (สินค้าใหม่ใช้ lead time ค่าเริ่มต้นจนกว่าจะโหลดใหม่; ออกแบบสำหรับ application instance เดียว)
+@Component
+public class ReorderEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ReorderEngine.class);
+
+    @Autowired
+    private StockTransactionRepository stockTransactionRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private ReservationEngine reservationEngine;
+    @Autowired
+    private ProductCatalog productCatalog;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${stock.reorder.window-days:28}")
+    private int windowDays;
+    @Value("${stock.reorder.safety-days:3}")
+    private int safetyDays;
+    @Value("${stock.reorder.default-lead-time-days:7}")
+    private int defaultLeadTimeDays;
+
+    static final class Usage {
+        final int[] daily; // ยอด OUT ต่อวัน ที่ตำแหน่ง epochDay % window
+        long lastDay;      // วันล่าสุดที่อยู่ใน daily
+        long total;        // ผลรวมของ daily
+
+        Usage(int window, long today) {
+            this.daily = new int[window];
+            this.lastDay = today;
+        }
+
+        // เลื่อน window ไปถึงวัน day: ล้างช่องของวันที่หลุดออกจาก window
+        void advanceTo(long day) {
+            long steps = Math.min(day - lastDay, daily.length);
+            for (long i = 1; i <= steps; i++) {
+                int slot = (int) Math.floorMod(lastDay + i, (long) daily.length);
+                total -= daily[slot];
+                daily[slot] = 0;
+            }
+            lastDay = Math.max(lastDay, day);
+        }
+
+        void add(long day, int quantity) {
+            advanceTo(day);
+            if (day <= lastDay - daily.length) {
+                return; // เก่ากว่า window
+            }
+            daily[(int) Math.floorMod(day, (long) daily.length)] += quantity;
+            total += quantity;
+        }
+    }
+
+    private static final class Change {
+        final long txId;
+        final Runnable action;
+
+        Change(long txId, Runnable action) {
+            this.txId = txId;
+            this.action = action;
+        }
+    }
+
+    private final Map<String, Usage> usage = new ConcurrentHashMap<>();
+    private final Map<String, Integer> leadTimes = new ConcurrentHashMap<>();
+    private volatile Map<String, String> supplierByProduct = Map.of();
+    private final Set<String> low = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+    private volatile long loadedDay;
+    // ล็อกการนำรายการ OUT ไปใช้กับ usage และการแทนที่ usage ตอนโหลด (snapshot และ changesDuringLoad ใช้ภายใต้ล็อกนี้)
+    private final Object usageLock = new Object();
+    // snapshot ของ database ที่ใช้โหลด usage ปัจจุบัน
+    private DbSnapshot snapshot;
+    // ไม่เป็น null ระหว่าง load อ่าน database: เก็บรายการที่ commit ระหว่างนั้นไว้ใช้ซ้ำกับข้อมูลที่โหลดใหม่
+    private List<Change> changesDuringLoad;
+
+    // สินค้าที่ต่ำกว่าจุดสั่งซื้อ เรียงจากจำนวนวันที่เหลือน้อยที่สุด
+    public List<LowStockItem> getLowStock() {
+        ensureLoaded();
+        long today = LocalDate.now().toEpochDay();
+        List<LowStockItem> items = new ArrayList<>();
+        for (String productId : low) {
+            LowStockItem item = assess(productId, today);
+            if (isLow(item)) {
+                Product product = productCatalog.get(productId);
+                item.setProductName(product != null ? product.getProductName() : null);
+                items.add(item);
+            }
+        }
+        items.sort(Comparator.comparingDouble(LowStockItem::getDaysOfCover));
+        return items;
+    }
+
+    // lead time ของผู้จำหน่ายเปลี่ยน: ประเมินสินค้าของผู้จำหน่ายนั้นใหม่ในรอบถัดไป
+    public void setLeadTime(String supplierId, Integer leadTimeDays) {
+        if (leadTimeDays == null) {
+            leadTimes.remove(supplierId);
+        } else {
+            leadTimes.put(supplierId, leadTimeDays);
+        }
+        if (loaded) {
+            supplierByProduct.forEach((productId, s) -> {
+                if (s.equals(supplierId)) {
+                    dirty.add(productId);
+                }
+            });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransactionsRecorded(StockTransactionsRecordedEvent event) {
+        List<StockTransaction> outs = event.getTransactions().stream().filter(t -> "OUT".equals(t.getType())).toList();
+        if (outs.isEmpty()) {
+            return;
+        }
+        synchronized (usageLock) {
+            applyCommitted(event.getTxId(), () -> addUsage(outs));
+        }
+    }
+
+    // ต้องถือ usageLock อยู่แล้ว
+    // ยังไม่โหลด หรือ snapshot ที่โหลดเห็น transaction นี้แล้ว: ไม่ต้องทำ; ระหว่าง load เก็บไว้ใช้ซ้ำกับข้อมูลใหม่
+    private void applyCommitted(long txId, Runnable action) {
+        if (loaded && !snapshot.includes(txId)) {
+            action.run();
+        }
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(new Change(txId, action));
+        }
+    }
+
+    private void addUsage(List<StockTransaction> outs) {
+        long today = LocalDate.now().toEpochDay();
+        for (StockTransaction t : outs) {
+            long day = t.getTransactionDate() != null ? t.getTransactionDate().toLocalDate().toEpochDay() : today;
+            Usage u = usage.computeIfAbsent(t.getProductId(), k -> new Usage(windowDays, today));
+            synchronized (u) {
+                u.add(day, t.getQuantity());
+            }
+            dirty.add(t.getProductId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockLevelChanged(StockLevelChangedEvent event) {
+        if (loaded) {
+            dirty.add(event.getProductId());
+        }
+    }
+
+    // ประเมินสินค้าที่เปลี่ยนเป็นรอบสั้นๆ นอก transaction (ยอดใน ReservationEngine อัปเดตหลัง commit แล้ว)
+    @Scheduled(fixedDelayString = "${stock.reorder.evaluate-ms:2000}", initialDelayString = "${stock.reorder.evaluate-ms:2000}")
+    public void evaluateChanged() {
+        if (!loaded || dirty.isEmpty()) {
+            return;
+        }
+        try {
+            long today = LocalDate.now().toEpochDay();
+            Iterator<String> it = dirty.iterator();
+            while (it.hasNext()) {
+                String productId = it.next();
+                it.remove();
+                evaluate(productId, today);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Reorder evaluation failed: {}", e.getMessage());
+        }
+    }
+
+    // ค่าเริ่มต้น: ทุก 1 นาที ประเมินทุกสินค้าใหม่ในหน่วยความจำ (ยอดจองที่เปลี่ยนจากการอนุมัติ/ปิดคำขอไม่มี event)
+    // ขึ้นวันใหม่จะโหลดยอดจาก ledger ใหม่ เพื่อแก้ค่าคลาดเคลื่อน
+    @Scheduled(fixedDelayString = "${stock.reorder.sweep-ms:60000}", initialDelayString = "${stock.reorder.sweep-ms:60000}")
+    public void sweep() {
+        try {
+            long today = LocalDate.now().toEpochDay();
+            if (!loaded || loadedDay != today) {
+                synchronized (this) {
+                    load();
+                }
+            }
+            evaluateAll(today);
+        } catch (RuntimeException e) {
+            log.warn("Reorder sweep failed: {}", e.getMessage());
+        }
+    }
+
+    private void evaluateAll(long today) {
+        Set<String> productIds = new HashSet<>(usage.keySet());
+        productIds.addAll(low);
+        for (String productId : productIds) {
+            evaluate(productId, today);
+        }
+    }
+
+    private void evaluate(String productId, long today) {
+        boolean isLow = isLow(assess(productId, today));
+        if (isLow ? low.add(productId) : low.remove(productId)) {
+            eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.LOW_STOCK,
+                    isLow ? WorkQueueChangedEvent.ADDED : WorkQueueChangedEvent.REMOVED, productId));
+        }
+    }
+
+    private static boolean isLow(LowStockItem item) {
+        return item.getDailyUsage() > 0 && item.getAvailable() <= item.getReorderPoint();
+    }
+
+    private LowStockItem assess(String productId, long today) {
+        long total = 0;
+        Usage u = usage.get(productId);
+        if (u != null) {
+            synchronized (u) {
+                u.advanceTo(today);
+                total = u.total;
+            }
+        }
+        double dailyUsage = (double) total / windowDays;
+        String supplierId = supplierByProduct.get(productId);
+        int leadTime = supplierId != null ? leadTimes.getOrDefault(supplierId, defaultLeadTimeDays) : defaultLeadTimeDays;
+        int available = reservationEngine.getAvailable(productId);
+
+        LowStockItem item = new LowStockItem();
+        item.setProductId(productId);
+        item.setSupplierId(supplierId);
+        item.setAvailable(available);
+        item.setDailyUsage(Math.round(dailyUsage * 100) / 100.0);
+        item.setLeadTimeDays(leadTime);
+        item.setReorderPoint((int) Math.ceil(dailyUsage * (leadTime + safetyDays)));
+        item.setDaysOfCover(dailyUsage > 0 ? Math.round(Math.max(available, 0) / dailyUsage * 10) / 10.0 : Double.MAX_VALUE);
+        return item;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                    evaluateAll(loadedDay);
+                }
+            }
+        }
+    }
+
+    private void load() {
+        synchronized (usageLock) {
+            changesDuringLoad = new ArrayList<>();
+        }
+        try {
+            replaceFromDatabase();
+        } finally {
+            synchronized (usageLock) {
+                changesDuringLoad = null;
+            }
+        }
+    }
+
+    private void replaceFromDatabase() {
+        long today = LocalDate.now().toEpochDay();
+        // ยอดรายวัน lead time และ snapshot ต้องมาจาก snapshot เดียวกัน จึงอ่านใน transaction แบบ REPEATABLE READ (ไม่ใช่ readOnly: ต้องโหลดจาก primary)
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        DbSnapshot[] read = new DbSnapshot[1];
+        Map<String, Usage> fresh = new HashMap<>();
+        Map<String, Integer> freshLeadTimes = new HashMap<>();
+        Map<String, String> freshSuppliers = new HashMap<>();
+        tx.executeWithoutResult(status -> {
+            read[0] = productRepository.currentSnapshot();
+            stockTransactionRepository.forEachDailyTotal("OUT", LocalDate.ofEpochDay(today - windowDays + 1), (productId, day, total) ->
+                    fresh.computeIfAbsent(productId, k -> new Usage(windowDays, today)).add(day.toEpochDay(), total));
+            freshLeadTimes.putAll(supplierRepository.findLeadTimes());
+            freshSuppliers.putAll(productRepository.findAllSupplierIds());
+        });
+        supplierByProduct = freshSuppliers;
+        leadTimes.keySet().retainAll(freshLeadTimes.keySet());
+        leadTimes.putAll(freshLeadTimes);
+        synchronized (usageLock) {
+            usage.keySet().retainAll(fresh.keySet());
+            usage.putAll(fresh);
+            snapshot = read[0];
+            loadedDay = today;
+            loaded = true;
+            // รายการที่ commit หลัง snapshot (รายการที่เกิดต่อจากนี้ต้องรอ usageLock จึงเห็น snapshot ใหม่แล้ว)
+            changesDuringLoad.stream().filter(c -> !read[0].includes(c.txId)).forEach(c -> c.action.run());
+            changesDuringLoad = null;
+        }
+        log.info("Reorder engine loaded usage for {} products", fresh.size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.inv.service;
+
+import com.inv.model.MovementRollup;
+import com.inv.model.RollupBackfillResult;
+import com.inv.repo.StockRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+// รายงานยอดเคลื่อนไหวรายวัน อ่านจากตาราง rollup เท่านั้น (ไม่ scan StockTransaction)
+@Service
+public class ReportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportService.class);
+    private static final int MAX_REPORT_DAYS = 366;
+
+    @Autowired
+    private StockRollupRepository stockRollupRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Transactional(readOnly = true)
+    public List<MovementRollup> getProductMovements(LocalDate from, LocalDate to, String productId) {
+        validateRange(from, to);
+        return stockRollupRepository.findByProduct(from, to, productId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<MovementRollup> getStaffMovements(LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        return stockRollupRepository.findByStaff(from, to);
+    }
+
+    @Transactional(readOnly = true)
+    public List<MovementRollup> getSupplierMovements(LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        return stockRollupRepository.findBySupplier(from, to);
+    }
+
+    // สร้างยอด rollup ใหม่จาก ledger ทีละวัน (วันละ transaction) สำหรับข้อมูลเดิมหรือแก้ค่าคลาดเคลื่อน
+    // from ว่าง = วันแรกที่มีรายการ, to ว่าง = วันนี้
+    public RollupBackfillResult backfill(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : stockRollupRepository.findFirstTransactionDay();
+        if (start == null) {
+            return new RollupBackfillResult(null, end, 0, 0); // ยังไม่มีรายการ
+        }
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "วันที่เริ่มต้นต้องไม่มากกว่าวันที่สิ้นสุด");
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int days = 0;
+        int rows = 0;
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            LocalDate d = day;
+            rows += tx.execute(status -> stockRollupRepository.rebuildDay(d));
+            days++;
+        }
+        log.info("Stock rollups rebuilt from {} to {}: {} days, {} rows", start, end, days, rows);
+        return new RollupBackfillResult(start, end, days, rows);
+    }
+
+    private void validateRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "วันที่เริ่มต้นต้องไม่มากกว่าวันที่สิ้นสุด");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_REPORT_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ช่วงวันที่ต้องไม่เกิน " + MAX_REPORT_DAYS + " วัน");
+        }
+    }
+}
@@ -1,61 +1,311 @@
 package com.inv.service;
 
+import com.inv.event.WorkQueueChangedEvent;
+import com.inv.model.PageResult;
 import com.inv.model.Request;
+import com.inv.model.RequestDecisionResult;
 import com.inv.model.RequestItem;
+import com.inv.repo.OrderRepository;
+import com.inv.repo.ProductRepository;
 import com.inv.repo.RequestRepository;
+import com.inv.repo.StockReservationRepository;
+import com.inv.util.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID; // Import เพิ่ม
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 public class RequestService {
 
+    private static final int MAX_BULK_DECISIONS = 500;
+
     @Autowired
     private RequestRepository requestRepository;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private StockReservationRepository reservationRepository;
+    @Autowired
+    private ReservationEngine reservationEngine;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-    public List<Request> getAllRequests() {
-        return requestRepository.findAll();
+    // อ่านจาก replica ได้: ETag ของ endpoint นี้คำนวณจากข้อมูลที่คืน (ResourceVersions.contentEtag)
+    @Transactional(readOnly = true)
+    public PageResult<Request> getRequests(String sort, String cursor, int limit, boolean includeItems) {
+        PageResult<Request> page = Pages.fetch(limit, () -> requestRepository.findPage(sort, cursor, limit));
+        if (includeItems) {
+            attachItems(page.getItems());
+        }
+        return page;
+    }
+
+    // เติม items ให้ทุก Request ด้วย query เดียว แล้วจับคู่ในหน่วยความจำ
+    public List<Request> attachItems(List<Request> requests) {
+        if (requests.isEmpty()) {
+            return requests;
+        }
+        List<String> requestIds = requests.stream().map(Request::getRequestId).collect(Collectors.toList());
+        Map<String, List<RequestItem>> byRequest = requestRepository.findItemsByRequestIds(requestIds).stream()
+                .collect(Collectors.groupingBy(RequestItem::getRequestId));
+        for (Request request : requests) {
+            request.setItems(byRequest.getOrDefault(request.getRequestId(), new ArrayList<>()));
+        }
+        return requests;
     }
 
     @Transactional
     public String createRequest(Request req, List<RequestItem> items) { // return String
-        String requestId = "REQ-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        String requestId = idGenerator.next("REQ-");
         req.setRequestId(requestId);
+        req.setOpenItems(items.size());
         requestRepository.save(req);
 
         for (RequestItem i : items) {
-            String requestItemId = "RIT-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+            String requestItemId = idGenerator.next("RIT-");
             i.setRequestItemId(requestItemId);
             i.setRequestId(requestId);
-            requestRepository.saveRequestItem(i);
         }
+        requestRepository.saveRequestItems(items);
+        if (req.getOrderId() != null) {
+            orderRepository.incrementOpenRequests(req.getOrderId());
+        }
+        eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.PENDING_REQUESTS, WorkQueueChangedEvent.ADDED, requestId));
         return requestId;
     }
 
-    public List<Request> getPendingRequests() {
-        return requestRepository.findPendingRequests();
+    public List<Request> getPendingRequests(boolean includeItems) {
+        List<Request> requests = requestRepository.findPendingRequests();
+        return includeItems ? attachItems(requests) : requests;
     }
 
     public List<RequestItem> getItemsByRequestId(String requestId) { // รับ String
         return requestRepository.findItemsByRequestId(requestId);
     }
 
+    // อนุมัติพร้อมจองสินค้าทุกรายการ ถ้าของไม่พอจะไม่อนุมัติ
+    @Transactional
     public void approveRequest(String requestId, String approverId) { // รับ String
-        requestRepository.updateStatus(requestId, "Approved", approverId);
+        if (!requestRepository.updateStatusIfAwaiting(requestId, "Approved", approverId)) {
+            if (requestRepository.findById(requestId) == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบคำขอเบิกที่ระบุ");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "คำขอเบิกนี้ไม่ได้อยู่ในสถานะรออนุมัติ");
+        }
+
+        Map<String, Integer> perProduct = new TreeMap<>();
+        for (RequestItem item : requestRepository.findItemsByRequestId(requestId)) {
+            perProduct.merge(item.getProductId(), item.getRemainingQty(), Integer::sum);
+        }
+        List<String> shortages = reservationEngine.reserve(requestId, perProduct, productRepository.currentTransactionId());
+        if (!shortages.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังไม่เพียงพอสำหรับการจอง: " + String.join(", ", shortages));
+        }
+        if (!perProduct.isEmpty()) {
+            saveReservations(perProduct.keySet(), () -> reservationRepository.saveAll(requestId, perProduct));
+        }
+        publishApproved(requestId);
     }
 
+    // ปฏิเสธได้เฉพาะคำขอที่ยังรออนุมัติ (คำขอที่อนุมัติแล้วมียอดจองอยู่ ต้องปิดด้วย closeRequest)
+    @Transactional
     public void rejectRequest(String requestId, String approverId) { // รับ String
-        requestRepository.updateStatus(requestId, "Rejected", approverId);
+        if (!requestRepository.updateStatusIfAwaiting(requestId, "Rejected", approverId)) {
+            if (requestRepository.findById(requestId) == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบคำขอเบิกที่ระบุ");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "คำขอเบิกนี้ไม่ได้อยู่ในสถานะรออนุมัติ");
+        }
+        eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.PENDING_REQUESTS, WorkQueueChangedEvent.REMOVED, requestId));
+    }
+
+    // บันทึกการจองโดยถือ lock ของสินค้า แล้วตรวจซ้ำใน database: ยอดในหน่วยความจำยังไม่รวมการเบิกที่ยังไม่ commit
+    private void saveReservations(Set<String> productIds, Runnable save) {
+        productRepository.lockForUpdate(productIds);
+        save.run();
+        List<String> overReserved = productRepository.findOverReserved(productIds);
+        if (!overReserved.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังไม่เพียงพอสำหรับการจอง: " + String.join(", ", overReserved));
+        }
+    }
+
+    private void publishApproved(String requestId) {
+        eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.PENDING_REQUESTS, WorkQueueChangedEvent.REMOVED, requestId));
+        eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.APPROVED_REQUESTS, WorkQueueChangedEvent.ADDED, requestId));
+    }
+
+    // อนุมัติหลายคำขอ: จองสินค้าทีละคำขอในหน่วยความจำ แล้วเปลี่ยนสถานะทั้งหมดด้วย UPDATE เดียว
+    // คำขอที่ของไม่พอ/ไม่อยู่ในสถานะรออนุมัติ จะถูกรายงานแยก ไม่ทำให้คำขออื่นล้มเหลว
+    @Transactional
+    public RequestDecisionResult approveRequests(List<String> requestIds, String approverId) {
+        Set<String> ids = validateBulkIds(requestIds);
+        Map<String, Request> requests = findAllById(ids);
+        RequestDecisionResult result = new RequestDecisionResult();
+
+        Map<String, Map<String, Integer>> perRequest = new LinkedHashMap<>();
+        for (RequestItem item : requestRepository.findItemsByRequestIds(ids)) {
+            perRequest.computeIfAbsent(item.getRequestId(), k -> new TreeMap<>())
+                    .merge(item.getProductId(), item.getRemainingQty(), Integer::sum);
+        }
+        Map<String, Map<String, Integer>> reserved = new LinkedHashMap<>();
+        Map<String, String> shortageMessages = new HashMap<>();
+        long txId = productRepository.currentTransactionId();
+        for (String id : ids) {
+            Request request = requests.get(id);
+            if (request == null || !"Awaiting Approval".equals(request.getStatus())) {
+                continue;
+            }
+            Map<String, Integer> quantities = perRequest.getOrDefault(id, new TreeMap<>());
+            List<String> shortages = reservationEngine.reserve(id, quantities, txId);
+            if (shortages.isEmpty()) {
+                reserved.put(id, quantities);
+            } else {
+                shortageMessages.put(id, "สินค้าในคลังไม่เพียงพอสำหรับการจอง: " + String.join(", ", shortages));
+            }
+        }
+
+        Set<String> approved = reserved.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(requestRepository.updateStatusIfAwaiting(reserved.keySet(), "Approved", approverId));
+        // คำขอที่สถานะถูกเปลี่ยนไประหว่างนี้: คืนยอดจองทันที
+        reserved.keySet().removeIf(id -> {
+            if (approved.contains(id)) {
+                return false;
+            }
+            reservationEngine.cancel(id);
+            return true;
+        });
+        if (!reserved.isEmpty()) {
+            Set<String> productIds = new HashSet<>();
+            reserved.values().forEach(quantities -> productIds.addAll(quantities.keySet()));
+            // ตรวจซ้ำใน database ขณะถือ lock ของสินค้า (ยอดในหน่วยความจำยังไม่รวมการเบิกที่ยังไม่ commit)
+            // คำขอที่ยอดคงเหลือไม่พอจะกลับเป็นรออนุมัติและรายงานแยก คำขออื่นอนุมัติตามปกติ
+            productRepository.lockForUpdate(productIds);
+            Map<String, Integer> unreserved = productRepository.findUnreserved(productIds);
+            List<String> overReserved = new ArrayList<>();
+            reserved.forEach((id, quantities) -> {
+                List<String> shortages = quantities.entrySet().stream()
+                        .filter(e -> unreserved.getOrDefault(e.getKey(), 0) < e.getValue())
+                        .map(Map.Entry::getKey)
+                        .toList();
+                if (shortages.isEmpty()) {
+                    quantities.forEach((productId, qty) -> unreserved.merge(productId, -qty, Integer::sum));
+                } else {
+                    overReserved.add(id);
+                    shortageMessages.put(id, "สินค้าในคลังไม่เพียงพอสำหรับการจอง: " + String.join(", ", shortages));
+                }
+            });
+            if (!overReserved.isEmpty()) {
+                requestRepository.revertApproval(overReserved);
+                overReserved.forEach(id -> {
+                    approved.remove(id);
+                    reserved.remove(id);
+                    reservationEngine.cancel(id);
+                });
+            }
+            if (!reserved.isEmpty()) {
+                reservationRepository.saveAll(reserved);
+            }
+        }
+
+        for (String id : ids) {
+            if (approved.contains(id)) {
+                publishApproved(id);
+                result.success(id, "Approved");
+            } else if (shortageMessages.containsKey(id)) {
+                result.failure(id, requests.get(id).getStatus(), shortageMessages.get(id));
+            } else {
+                reportNotAwaiting(result, id, requests.get(id));
+            }
+        }
+        return result;
     }
 
-    public List<Request> getReadyToCloseRequests() {
-        return requestRepository.findReadyToCloseRequests();
+    // ปฏิเสธหลายคำขอด้วย UPDATE เดียว เฉพาะคำขอที่ยังรออนุมัติ
+    @Transactional
+    public RequestDecisionResult rejectRequests(List<String> requestIds, String approverId) {
+        Set<String> ids = validateBulkIds(requestIds);
+        Set<String> rejected = new HashSet<>(requestRepository.updateStatusIfAwaiting(ids, "Rejected", approverId));
+        Map<String, Request> requests = rejected.size() == ids.size() ? Map.of() : findAllById(ids);
+        RequestDecisionResult result = new RequestDecisionResult();
+        for (String id : ids) {
+            if (rejected.contains(id)) {
+                eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.PENDING_REQUESTS, WorkQueueChangedEvent.REMOVED, id));
+                result.success(id, "Rejected");
+            } else {
+                reportNotAwaiting(result, id, requests.get(id));
+            }
+        }
+        return result;
     }
 
+    private Set<String> validateBulkIds(List<String> requestIds) {
+        if (requestIds == null || requestIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "กรุณาระบุคำขอเบิก");
+        }
+        if (requestIds.size() > MAX_BULK_DECISIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ระบุคำขอเบิกได้ไม่เกิน " + MAX_BULK_DECISIONS + " รายการต่อครั้ง");
+        }
+        if (requestIds.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "กรุณาระบุคำขอเบิก (requestId is required)");
+        }
+        return new LinkedHashSet<>(requestIds);
+    }
+
+    private Map<String, Request> findAllById(Set<String> ids) {
+        return requestRepository.findByIds(ids).stream()
+                .collect(Collectors.toMap(Request::getRequestId, r -> r));
+    }
+
+    private void reportNotAwaiting(RequestDecisionResult result, String requestId, Request request) {
+        if (request == null) {
+            result.failure(requestId, null, "ไม่พบคำขอเบิกที่ระบุ");
+        } else {
+            result.failure(requestId, request.getStatus(), "คำขอเบิกนี้ไม่ได้อยู่ในสถานะรออนุมัติ");
+        }
+    }
+
+    public List<Request> getReadyToCloseRequests(boolean includeItems) {
+        List<Request> requests = requestRepository.findReadyToCloseRequests();
+        return includeItems ? attachItems(requests) : requests;
+    }
+
+    @Transactional
     public void closeRequest(String requestId, String staffId) { // รับ String
-        requestRepository.closeRequest(requestId, staffId);
+        if (!requestRepository.closeRequest(requestId, staffId)) {
+            if (requestRepository.findById(requestId) == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบคำขอเบิกที่ระบุ");
+            }
+            return; // ปิดไปแล้ว
+        }
+        // คืนยอดจองที่เหลือ (กรณีปิดก่อนเบิกครบ)
+        reservationRepository.deleteByRequest(requestId);
+        long txId = productRepository.currentTransactionId();
+        TransactionHooks.afterCommit(() -> reservationEngine.release(requestId, txId));
+        publishClosed(eventPublisher, requestId);
+    }
+
+    // Request ที่ปิดแล้วออกจากทั้งคิวรอเบิกและคิวรอปิด
+    static void publishClosed(ApplicationEventPublisher eventPublisher, String requestId) {
+        eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.APPROVED_REQUESTS, WorkQueueChangedEvent.REMOVED, requestId));
+        eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.READY_TO_CLOSE_REQUESTS, WorkQueueChangedEvent.REMOVED, requestId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,375 @@
+package com.inv.service;
+
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.repo.DbSnapshot;
+import com.inv.repo.ProductRepository;
+import com.inv.repo.StockReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+// ยอดจองสินค้าในหน่วยความจำ: available = on-hand - reserved
+// ล็อกแบบ striped ตาม productId ทำให้การอนุมัติพร้อมกันหลายคำขอไม่จองเกินของที่มี
+// สถานะถาวรอยู่ในตาราง StockReservation; ยอดในหน่วยความจำใช้ตรวจเบื้องต้นเท่านั้น database เป็นตัวตัดสินสุดท้าย
+// (ตัดสต็อกแบบมีเงื่อนไข และตรวจ quantity >= ยอดจองรวม ขณะถือ lock ของแถว product ทั้งตอนจองและตอนเบิก)
+// ทุกการเปลี่ยนแปลง (ยอดสต็อก, การจอง, การเบิก, การคืนยอดจอง) ระบุด้วย xid: ตัดทิ้งถ้า snapshot ที่ใช้โหลดเห็น transaction นั้นแล้ว
+// การจองมีผลในหน่วยความจำทันทีก่อน commit จึงเก็บไว้ใน inFlight จนกว่า transaction จะจบ เพื่อใช้ซ้ำหลังโหลดใหม่ หรือคืนเมื่อ rollback
+// (ออกแบบสำหรับ application instance เดียว)
+@Component
+public class ReservationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationEngine.class);
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private StockReservationRepository reservationRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final Map<String, Level> levels = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Integer>> byRequest = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    // snapshot ของ database ที่ใช้โหลดข้อมูลปัจจุบัน
+    private volatile DbSnapshot snapshot;
+    // ไม่เป็น null ระหว่าง load อ่าน database: เก็บการเปลี่ยนแปลงไว้ใช้ซ้ำกับข้อมูลที่โหลดใหม่
+    private volatile List<Change> changesDuringLoad;
+    // การจองของ transaction ที่ยังไม่จบ (key = requestId)
+    private final Map<String, Reservation> inFlight = new ConcurrentHashMap<>();
+
+    public ReservationEngine() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private static final class Level {
+        int onHand;
+        int reserved;
+    }
+
+    private static final class Change {
+        final long txId;
+        final Runnable action;
+
+        Change(long txId, Runnable action) {
+            this.txId = txId;
+            this.action = action;
+        }
+    }
+
+    private static final class Reservation {
+        final long txId;
+        final Map<String, Integer> quantities;
+
+        Reservation(long txId, Map<String, Integer> quantities) {
+            this.txId = txId;
+            this.quantities = quantities;
+        }
+    }
+
+    // จองสินค้าทั้งหมดของคำขอแบบ all-or-nothing ใน transaction txId; คืนรายการ product_id ที่ของไม่พอ (ว่าง = จองสำเร็จ)
+    // การจองคืนเองเมื่อ transaction rollback
+    public List<String> reserve(String requestId, Map<String, Integer> quantities, long txId) {
+        ensureLoaded();
+        List<String> shortages = new ArrayList<>();
+        List<ReentrantLock> held = lockAll(quantities.keySet());
+        try {
+            for (Map.Entry<String, Integer> e : quantities.entrySet()) {
+                Level level = level(e.getKey());
+                if (level.onHand - level.reserved < e.getValue()) {
+                    shortages.add(e.getKey());
+                }
+            }
+            if (shortages.isEmpty()) {
+                addReservation(requestId, quantities, 1);
+                inFlight.put(requestId, new Reservation(txId, quantities));
+            }
+        } finally {
+            unlockAll(held);
+        }
+        if (shortages.isEmpty()) {
+            TransactionHooks.afterCommit(() -> committed(requestId));
+            TransactionHooks.afterRollback(() -> cancel(requestId));
+        }
+        return shortages;
+    }
+
+    // ยกเลิกการจองที่ transaction ยังไม่จบ (ไม่มีการจองค้างอยู่ = ไม่ทำอะไร)
+    public void cancel(String requestId) {
+        Reservation reservation = inFlight.get(requestId);
+        if (reservation == null) {
+            return;
+        }
+        List<ReentrantLock> held = lockAll(reservation.quantities.keySet());
+        try {
+            if (inFlight.remove(requestId, reservation)) {
+                addReservation(requestId, reservation.quantities, -1);
+            }
+        } finally {
+            unlockAll(held);
+        }
+    }
+
+    // การจอง commit แล้ว: ยอดในหน่วยความจำมีอยู่แล้ว แต่ load ที่กำลังอ่าน database อาจใช้ snapshot ก่อน commit
+    private void committed(String requestId) {
+        Reservation reservation = inFlight.get(requestId);
+        if (reservation == null) {
+            return;
+        }
+        List<ReentrantLock> held = lockAll(reservation.quantities.keySet());
+        try {
+            if (inFlight.remove(requestId, reservation)) {
+                List<Change> pending = changesDuringLoad;
+                if (pending != null) {
+                    pending.add(new Change(reservation.txId, () -> addReservation(requestId, reservation.quantities, 1)));
+                }
+            }
+        } finally {
+            unlockAll(held);
+        }
+    }
+
+    // ต้องถือ lock ของ stripe ของทุกสินค้าใน quantities อยู่แล้ว; sign = 1 จอง, -1 คืน
+    private void addReservation(String requestId, Map<String, Integer> quantities, int sign) {
+        Map<String, Integer> own = byRequest.computeIfAbsent(requestId, k -> new ConcurrentHashMap<>());
+        quantities.forEach((productId, qty) -> {
+            level(productId).reserved += sign * qty;
+            if (own.merge(productId, sign * qty, Integer::sum) <= 0) {
+                own.remove(productId);
+            }
+        });
+        if (own.isEmpty()) {
+            byRequest.remove(requestId);
+        }
+    }
+
+    // ตรวจเบื้องต้นว่าคำขอนี้เบิกได้โดยไม่ใช้ของที่จองไว้ให้คำขออื่น (ยังไม่รวมการเบิกที่ยังไม่ commit)
+    public boolean canFulfill(String requestId, String productId, int qty) {
+        ensureLoaded();
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            Level level = level(productId);
+            int own = ownReservation(requestId, productId);
+            return level.onHand - (level.reserved - own) >= qty;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ลดยอดจองของคำขอเมื่อเบิกจริง (เรียกหลัง commit ของ transaction txId)
+    public void consume(String requestId, String productId, int qty, long txId) {
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            applyCommitted(txId, () -> {
+                Map<String, Integer> own = byRequest.get(requestId);
+                if (own == null) {
+                    return;
+                }
+                int reserved = own.getOrDefault(productId, 0);
+                int used = Math.min(reserved, qty);
+                if (used > 0) {
+                    level(productId).reserved -= used;
+                    if (reserved - used == 0) {
+                        own.remove(productId);
+                    } else {
+                        own.put(productId, reserved - used);
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // คืนยอดจองที่เหลือทั้งหมดของคำขอเมื่อปิดคำขอ (เรียกหลัง commit ของ transaction txId)
+    public void release(String requestId, long txId) {
+        Map<String, Integer> own = byRequest.get(requestId);
+        List<ReentrantLock> held = lockAll(own != null ? own.keySet() : List.of());
+        try {
+            applyCommitted(txId, () -> {
+                Map<String, Integer> remaining = byRequest.remove(requestId);
+                if (remaining != null) {
+                    remaining.forEach((productId, qty) -> level(productId).reserved -= qty);
+                }
+            });
+        } finally {
+            unlockAll(held);
+        }
+    }
+
+    public int getOnHand(String productId) {
+        ensureLoaded();
+        return withLevel(productId, level -> level.onHand);
+    }
+
+    public int getReserved(String productId) {
+        ensureLoaded();
+        return withLevel(productId, level -> level.reserved);
+    }
+
+    public int getAvailable(String productId) {
+        ensureLoaded();
+        return withLevel(productId, level -> level.onHand - level.reserved);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockLevelChanged(StockLevelChangedEvent event) {
+        ReentrantLock lock = lockFor(event.getProductId());
+        lock.lock();
+        try {
+            applyCommitted(event.getTxId(), () -> level(event.getProductId()).onHand += event.getDelta());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ต้องถือ lock ของ stripe ที่ action แก้ไขอยู่แล้ว
+    // ยังไม่โหลด หรือ snapshot ที่โหลดเห็น transaction นี้แล้ว: ไม่ต้องทำ; ระหว่าง load เก็บไว้ใช้ซ้ำกับข้อมูลใหม่
+    private void applyCommitted(long txId, Runnable action) {
+        if (loaded && !snapshot.includes(txId)) {
+            action.run();
+        }
+        List<Change> pending = changesDuringLoad;
+        if (pending != null) {
+            pending.add(new Change(txId, action));
+        }
+    }
+
+    // อ่านยอดจาก database ใหม่เป็นระยะ เพื่อแก้ค่าคลาดเคลื่อนจากการแก้ไขนอกระบบ
+    @Scheduled(fixedDelayString = "${stock.reservation.resync-ms:300000}", initialDelayString = "${stock.reservation.resync-ms:300000}")
+    public void resync() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            log.warn("Reservation resync failed: {}", e.getMessage());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+    }
+
+    private synchronized void load() {
+        changesDuringLoad = Collections.synchronizedList(new ArrayList<>());
+        try {
+            replaceFromDatabase();
+        } finally {
+            changesDuringLoad = null;
+        }
+    }
+
+    private void replaceFromDatabase() {
+        // ยอดสต็อก ยอดจอง และ snapshot ต้องมาจาก snapshot เดียวกัน จึงอ่านใน transaction แบบ REPEATABLE READ (ไม่ใช่ readOnly: cache ต้องโหลดจาก primary)
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        DbSnapshot[] read = new DbSnapshot[1];
+        Map<String, Integer> onHand = new HashMap<>();
+        Map<String, Map<String, Integer>> reservations = new HashMap<>();
+        tx.executeWithoutResult(status -> {
+            read[0] = productRepository.currentSnapshot();
+            onHand.putAll(productRepository.findAllQuantities());
+            reservations.putAll(reservationRepository.findAllByRequest());
+        });
+
+        Map<String, Integer> reservedByProduct = new HashMap<>();
+        reservations.values().forEach(own -> own.forEach((productId, qty) -> reservedByProduct.merge(productId, qty, Integer::sum)));
+
+        // ล็อกทุก stripe ระหว่างแทนที่ข้อมูล
+        List<ReentrantLock> held = new ArrayList<>(STRIPES);
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+            held.add(lock);
+        }
+        try {
+            levels.clear();
+            onHand.forEach((productId, qty) -> level(productId).onHand = qty);
+            reservedByProduct.forEach((productId, qty) -> level(productId).reserved = qty);
+            byRequest.clear();
+            reservations.forEach((requestId, own) -> byRequest.put(requestId, new ConcurrentHashMap<>(own)));
+            snapshot = read[0];
+            loaded = true;
+            // การเปลี่ยนแปลงที่ commit หลัง snapshot (การเปลี่ยนแปลงที่เกิดต่อจากนี้ต้องรอ lock จึงเห็น snapshot ใหม่แล้ว)
+            List<Change> pending = changesDuringLoad;
+            synchronized (pending) {
+                pending.stream().filter(c -> !read[0].includes(c.txId)).forEach(c -> c.action.run());
+            }
+            changesDuringLoad = null;
+            // การจองที่ยังไม่ commit (หรือ commit หลัง snapshot แต่ยังไม่ได้แจ้ง) ไม่อยู่ในข้อมูลที่อ่าน
+            inFlight.forEach((requestId, r) -> {
+                if (!read[0].includes(r.txId)) {
+                    addReservation(requestId, r.quantities, 1);
+                }
+            });
+        } finally {
+            unlockAll(held);
+        }
+    }
+
+    private int ownReservation(String requestId, String productId) {
+        Map<String, Integer> own = byRequest.get(requestId);
+        return own != null ? own.getOrDefault(productId, 0) : 0;
+    }
+
+    private Level level(String productId) {
+        return levels.computeIfAbsent(productId, k -> new Level());
+    }
+
+    private int withLevel(String productId, ToIntFunction<Level> reader) {
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            return reader.applyAsInt(level(productId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(String productId) {
+        return locks[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+
+    // ล็อก stripe ตามลำดับ index เสมอ เพื่อไม่ให้เกิด deadlock เมื่อจองหลายสินค้า
+    private List<ReentrantLock> lockAll(Iterable<String> productIds) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        productIds.forEach(id -> indexes.add(Math.floorMod(id.hashCode(), STRIPES)));
+        List<ReentrantLock> held = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            locks[index].lock();
+            held.add(locks[index]);
+        }
+        return held;
+    }
+
+    private void unlockAll(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+}
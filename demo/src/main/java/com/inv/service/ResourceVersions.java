@@ -0,0 +1,74 @@
+package com.inv.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.event.WorkQueueChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// เลขเวอร์ชันของข้อมูลแต่ละชุด (products, orders, requests) สำหรับสร้าง ETag ของ GET แบบ list
+// เพิ่มหลัง commit ทุกครั้งที่ข้อมูลชุดนั้นเปลี่ยน; ETag มีเวลาเริ่มระบบอยู่ด้วยเพื่อไม่ให้ซ้ำหลัง restart
+// controller ต้องอ่าน etag() ก่อน query เสมอ เพื่อให้การเขียนที่เกิดระหว่างนั้นทำให้ ETag เก่ากว่าข้อมูล (ไม่ใช่ใหม่กว่า)
+// และ query ของ endpoint ที่ใช้ etag() ต้องอ่านจาก primary (ห้ามเป็น @Transactional(readOnly = true) ซึ่งไป replica)
+// endpoint ที่อ่านจาก replica ใช้ contentEtag() ซึ่งคำนวณจากข้อมูลที่อ่านได้จริงแทน
+@Component
+public class ResourceVersions {
+
+    public static final String PRODUCTS = "products";
+    public static final String ORDERS = "orders";
+    public static final String REQUESTS = "requests";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, AtomicLong> versions = Map.of(
+            PRODUCTS, new AtomicLong(),
+            ORDERS, new AtomicLong(),
+            REQUESTS, new AtomicLong()
+    );
+
+    // variant แยก ETag ของ response รูปแบบต่างกันจาก resource เดียวกัน (เช่น include=items หรือ id)
+    public String etag(String resource, String variant) {
+        return "W/\"" + resource + '-' + epoch + '-' + versions.get(resource).get()
+                + (variant == null || variant.isEmpty() ? "" : '-' + variant.replaceAll("[^A-Za-z0-9_-]", "")) + '"';
+    }
+
+    // ETag จากเนื้อหาของ response: ตรงกับข้อมูลเสมอไม่ว่าจะอ่านจาก primary หรือ replica ที่ตามหลังอยู่
+    // ต้อง query ก่อนทุกครั้ง แต่ไม่ต้องส่ง body ซ้ำเมื่อข้อมูลไม่เปลี่ยน
+    public String contentEtag(String resource, Object body) {
+        try {
+            return "W/\"" + resource + '-' + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(body)) + '"';
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + resource + " for ETag", e);
+        }
+    }
+
+    // เพิ่มเวอร์ชันหลัง commit (หรือทันทีถ้าไม่มี transaction)
+    public void bumpAfterCommit(String resource) {
+        TransactionHooks.afterCommit(() -> bump(resource));
+    }
+
+    public void bump(String resource) {
+        versions.get(resource).incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockLevelChanged(StockLevelChangedEvent event) {
+        bump(PRODUCTS);
+    }
+
+    // การเปลี่ยนแปลงของคิวงานมาจากการสร้าง/อนุมัติ/เบิก/ปิด Request ซึ่งกระทบ Order ที่ผูกอยู่ด้วย
+    // (fulfilled_qty, open_requests, status)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWorkQueueChanged(WorkQueueChangedEvent event) {
+        bump(REQUESTS);
+        bump(ORDERS);
+    }
+}
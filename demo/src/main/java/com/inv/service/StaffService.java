@@ -1,16 +1,16 @@
 package com.inv.service;
 
+import com.inv.model.PageResult;
 import com.inv.model.Staff;
 import com.inv.repo.UserRepository; // แก้ไข: import StaffRepository
+import com.inv.util.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.List;
-import java.util.UUID; // Import เพิ่ม
-
 @Service
 public class StaffService {
 
@@ -19,9 +19,12 @@ public class StaffService {
 
     @Autowired
     private PasswordEncoder passwordEncoder;
+    @Autowired
+    private IdGenerator idGenerator;
 
-    public List<Staff> getAllStaff() {
-        return staffRepository.findAll();
+    @Transactional(readOnly = true)
+    public PageResult<Staff> getStaff(String sort, String cursor, int limit) {
+        return Pages.fetch(limit, () -> staffRepository.findPage(sort, cursor, limit));
     }
 
     public Staff createStaff(Staff staff) {
@@ -33,7 +36,7 @@ public class StaffService {
         staff.setPassword(passwordEncoder.encode(initialPassword));
 
         // เพิ่ม: สร้าง ID ที่นี่
-        String staffId = "STF-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        String staffId = idGenerator.next("STF-");
         staff.setStaffId(staffId);
 
         staff.setActive(true);
@@ -1,28 +1,64 @@
 package com.inv.service;
 
-import com.inv.model.Product;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.event.WorkQueueChangedEvent;
+import com.inv.model.BulkResult;
+import com.inv.model.InventoryValuation;
+import com.inv.model.LowStockItem;
 import com.inv.model.Request;
 import com.inv.model.RequestItem;
+import com.inv.model.PageResult;
 import com.inv.model.StockTransaction;
+import com.inv.model.StockTransactionFilter;
 import com.inv.repo.OrderRepository;
 import com.inv.repo.ProductRepository;
 import com.inv.repo.RequestRepository;
+import com.inv.repo.StockReservationRepository;
 import com.inv.repo.StockTransactionRepository;
+import com.inv.util.CsvReader;
+import com.inv.util.IdGenerator;
+import com.inv.util.KeysetCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 
 @Service
 public class StockService {
 
+    private static final Logger log = LoggerFactory.getLogger(StockService.class);
+
+    // จำนวนบรรทัดต่อ JDBC batch ของการรับสินค้าแบบ bulk
+    private static final int STOCK_IN_BATCH_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private ProductRepository productRepository;
+    @Autowired
+    private IdGenerator idGenerator;
 
 
     @Autowired
@@ -31,6 +67,24 @@ public class StockService {
     private RequestRepository requestRepository;
     @Autowired
     private OrderRepository orderRepository;
+    @Autowired
+    private LedgerWriter ledgerWriter;
+    @Autowired
+    private RequestService requestService;
+    @Autowired
+    private StockReservationRepository reservationRepository;
+    @Autowired
+    private ReservationEngine reservationEngine;
+    @Autowired
+    private ReorderEngine reorderEngine;
+    @Autowired
+    private ValuationEngine valuationEngine;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     @Transactional
     // แก้ไข: เปลี่ยน Type ของ ID ทั้งหมดเป็น String
@@ -40,7 +94,7 @@ public class StockService {
 
         // 2. Record Stock Transaction
         StockTransaction transaction = new StockTransaction();
-        String transactionId = "ST-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        String transactionId = idGenerator.next("ST-");
         transaction.setTransactionId(transactionId);
         transaction.setType("IN");
         transaction.setProductId(productId);
@@ -51,11 +105,184 @@ public class StockService {
         String referenceNote = String.format("Stock-In from Supplier ID %s. Note: %s", supplierId, note);
         transaction.setDescription(referenceNote); // แก้ไข: ใช้ setDescription ตาม schema ใหม่
 
-        stockTransactionRepository.save(transaction);
+        ledgerWriter.record(transaction);
+        eventPublisher.publishEvent(new StockLevelChangedEvent(productId, quantity, productRepository.currentTransactionId()));
+    }
+
+    // รับสินค้าแบบหลายบรรทัดจาก stream (CSV หรือ NDJSON) โดยอ่านทีละบรรทัดและบันทึกทีละ batch
+    // CSV: productId,quantity,supplierId,note (บรรทัดหัวตารางเป็น optional)
+    // NDJSON: {"productId":..., "quantity":..., "supplierId":..., "note":...} ต่อบรรทัด
+    // แต่ละ batch commit แยกกัน (ไม่ถือ lock ของ product ตลอดการอัปโหลด); batch ที่บันทึกไม่สำเร็จจะรายงานเป็น error รายบรรทัด
+    public BulkResult addStockInBulk(BufferedReader reader, boolean ndjson, String staffId) throws IOException {
+        BulkResult result = new BulkResult();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<StockInLine> batch = new ArrayList<>(STOCK_IN_BATCH_SIZE);
+        CsvReader csv = new CsvReader(reader);
+        int lineNumber = 0;
+        while (true) {
+            StockInLine line;
+            if (ndjson) {
+                String raw = reader.readLine();
+                if (raw == null) {
+                    break;
+                }
+                lineNumber++;
+                if (lineNumber == 1) {
+                    raw = CsvReader.stripBom(raw);
+                }
+                if (raw.isBlank()) {
+                    continue;
+                }
+                try {
+                    line = parseNdjsonLine(raw);
+                } catch (IOException e) {
+                    result.error(lineNumber, "รูปแบบ JSON ไม่ถูกต้อง");
+                    continue;
+                }
+            } else {
+                List<String> fields = csv.next();
+                if (fields == null) {
+                    break;
+                }
+                lineNumber = csv.getLineNumber();
+                if (csv.isFirstRecord() && "productId".equalsIgnoreCase(fields.get(0))) {
+                    continue; // ข้ามหัวตาราง
+                }
+                line = parseCsvLine(fields);
+            }
+            line.lineNumber = lineNumber;
+
+            String error = validateStockInLine(line);
+            if (error != null) {
+                result.error(lineNumber, error);
+                continue;
+            }
+            batch.add(line);
+            if (batch.size() >= STOCK_IN_BATCH_SIZE) {
+                flushStockIn(tx, batch, staffId, result);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushStockIn(tx, batch, staffId, result);
+        }
+        return result;
+    }
+
+    private StockInLine parseNdjsonLine(String raw) throws IOException {
+        JsonNode node = objectMapper.readTree(raw);
+        StockInLine line = new StockInLine();
+        line.productId = node.path("productId").asText(null);
+        line.quantity = node.path("quantity").asInt(0);
+        line.supplierId = node.path("supplierId").asText(null);
+        line.note = node.path("note").asText(null);
+        return line;
+    }
+
+    private StockInLine parseCsvLine(List<String> fields) {
+        StockInLine line = new StockInLine();
+        line.productId = fields.get(0);
+        if (fields.size() > 1) {
+            try {
+                line.quantity = Integer.parseInt(fields.get(1));
+            } catch (NumberFormatException e) {
+                line.quantity = 0;
+            }
+        }
+        line.supplierId = fields.size() > 2 ? fields.get(2) : null;
+        line.note = fields.size() > 3 ? fields.get(3) : null;
+        return line;
+    }
+
+    private String validateStockInLine(StockInLine line) {
+        if (line.productId == null || line.productId.isBlank()) {
+            return "กรุณาระบุรหัสสินค้า (productId is required)";
+        }
+        if (line.quantity <= 0) {
+            return "จำนวนที่รับเข้าต้องมากกว่า 0";
+        }
+        return null;
+    }
+
+    private void flushStockIn(TransactionTemplate tx, List<StockInLine> batch, String staffId, BulkResult result) {
+        BulkResult chunk = new BulkResult();
+        try {
+            tx.executeWithoutResult(status -> saveStockIn(batch, staffId, chunk));
+        } catch (RuntimeException e) {
+            // batch นี้ rollback ทั้งหมด: รายงานทุกบรรทัดเพื่อให้ส่งใหม่ได้
+            log.warn("Bulk stock-in batch of {} lines failed: {}", batch.size(), e.getMessage());
+            batch.forEach(line -> result.error(line.lineNumber, "บันทึกไม่สำเร็จ กรุณาส่งบรรทัดนี้ใหม่"));
+            return;
+        }
+        for (int i = 0; i < chunk.getSucceeded(); i++) {
+            result.success();
+        }
+        chunk.getErrors().forEach(error -> result.error(error.getLine(), error.getMessage()));
+    }
+
+    private void saveStockIn(List<StockInLine> batch, String staffId, BulkResult result) {
+        Set<String> productIds = batch.stream().map(l -> l.productId).collect(Collectors.toSet());
+        Set<String> existing = productRepository.findExistingIds(productIds);
+
+        Map<String, Integer> perProduct = new TreeMap<>(); // เรียงตาม product_id เพื่อลดโอกาส deadlock
+        List<StockTransaction> transactions = new ArrayList<>(batch.size());
+        for (StockInLine line : batch) {
+            if (!existing.contains(line.productId)) {
+                result.error(line.lineNumber, "ไม่พบสินค้า " + line.productId);
+                continue;
+            }
+            perProduct.merge(line.productId, line.quantity, Integer::sum);
+
+            StockTransaction transaction = new StockTransaction();
+            transaction.setTransactionId(idGenerator.next("ST-"));
+            transaction.setType("IN");
+            transaction.setProductId(line.productId);
+            transaction.setQuantity(line.quantity);
+            transaction.setStaffId(staffId);
+            transaction.setDescription(String.format("Stock-In from Supplier ID %s. Note: %s", line.supplierId, line.note));
+            transactions.add(transaction);
+            result.success();
+        }
+        if (!transactions.isEmpty()) {
+            productRepository.updateQuantities(perProduct);
+            ledgerWriter.recordAll(transactions);
+            long txId = productRepository.currentTransactionId();
+            perProduct.forEach((productId, qty) -> eventPublisher.publishEvent(new StockLevelChangedEvent(productId, qty, txId)));
+        }
+    }
+
+    // หนึ่งบรรทัดของการรับสินค้าแบบ bulk
+    private static class StockInLine {
+        int lineNumber;
+        String productId;
+        int quantity;
+        String supplierId;
+        String note;
+    }
+
+    // ยอดคงเหลือ ยอดจอง และยอดที่ใช้ได้ของสินค้า (จากหน่วยความจำ)
+    public Map<String, Object> getAvailability(String productId) {
+        return Map.of(
+                "productId", productId,
+                "onHand", reservationEngine.getOnHand(productId),
+                "reserved", reservationEngine.getReserved(productId),
+                "available", reservationEngine.getAvailable(productId)
+        );
+    }
+
+    // สินค้าที่ต่ำกว่าจุดสั่งซื้อซ้ำ (คำนวณจากอัตราการเบิกใน ledger)
+    public List<LowStockItem> getLowStock() {
+        return reorderEngine.getLowStock();
+    }
+
+    // มูลค่าสินค้าคงคลังจาก running total ในหน่วยความจำ
+    public InventoryValuation getValuation() {
+        return valuationEngine.getValuation();
     }
 
-    public List<Request> getApprovedRequests() {
-        return requestRepository.findApprovedRequests();
+    public List<Request> getApprovedRequests(boolean includeItems) {
+        List<Request> requests = requestRepository.findApprovedRequests();
+        return includeItems ? requestService.attachItems(requests) : requests;
     }
 
     @Transactional
@@ -65,53 +292,226 @@ public class StockService {
         if (fulfillQty <= 0) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "จำนวนที่เบิกต้องมากกว่า 0");
         }
-        RequestItem item = requestRepository.findItemById(requestItemId);
-        if (item == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบรายการเบิกที่ระบุ");
-        }
-        if (fulfillQty > item.getRemainingQty()) {
+        // 11. Update Fulfillment
+        // ① Update RequestItem (ตรวจ remaining_qty ใน statement เดียวกัน)
+        RequestRepository.ItemFulfillment fulfillment = requestRepository.fulfillItemIfRemaining(requestItemId, fulfillQty);
+        if (fulfillment == null) {
+            // อ่านซ้ำเฉพาะกรณีล้มเหลว เพื่อแยกข้อความ error
+            if (requestRepository.findItemById(requestItemId) == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบรายการเบิกที่ระบุ");
+            }
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "จำนวนที่เบิกเกินกว่าที่เหลืออยู่");
         }
-        Product product = productRepository.findById(item.getProductId());
-        if (product.getQuantity() < fulfillQty) {
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังไม่เพียงพอ");
-        }
+        RequestItem item = fulfillment.getItem();
 
-        // 11. Update Fulfillment
-        // ① Update RequestItem
-        requestRepository.updateItemFulfillment(requestItemId, fulfillQty);
+        // ห้ามใช้ของที่จองไว้ให้คำขออื่น: ตรวจในหน่วยความจำก่อน (database ตรวจซ้ำหลังตัดสต็อก)
+        if (!reservationEngine.canFulfill(item.getRequestId(), item.getProductId(), fulfillQty)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังถูกจองไว้สำหรับคำขออื่น");
+        }
 
-        // ② Update Stock ใน Product (ส่งค่าติดลบ)
-        productRepository.updateQuantity(item.getProductId(), -fulfillQty);
+        // ② ตัด Stock ใน Product แบบมีเงื่อนไข (กันการเบิกเกินเมื่อมีหลายคนเบิกพร้อมกัน)
+        Integer newBalance = productRepository.decrementQuantityIfAvailable(item.getProductId(), fulfillQty);
+        if (newBalance == null) {
+            // โยน exception เพื่อ rollback การอัปเดต RequestItem ด้านบน
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังไม่เพียงพอ");
+        }
+        String requestId = item.getRequestId();
+        String productId = item.getProductId();
+        // ลดยอดจองของคำขอนี้ แล้วตรวจว่ายอดที่เหลือยังพอสำหรับการจองของคำขออื่น (ถือ lock ของ product อยู่แล้ว)
+        reservationRepository.consume(requestId, productId, fulfillQty);
+        if (!productRepository.findOverReserved(List.of(productId)).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังถูกจองไว้สำหรับคำขออื่น");
+        }
 
         // ③ Insert ลง StockTransaction (OUT)
         StockTransaction transaction = new StockTransaction();
-        String transactionId = "ST-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        String transactionId = idGenerator.next("ST-");
         transaction.setTransactionId(transactionId);
         transaction.setType("OUT");
         transaction.setProductId(item.getProductId());
         transaction.setQuantity(fulfillQty);
         transaction.setStaffId(warehouseStaffId);
         transaction.setDescription("Fulfill Request ID " + item.getRequestId());
-        stockTransactionRepository.save(transaction);
+        ledgerWriter.record(transaction);
+
+        // ④ ลดยอดจองในหน่วยความจำหลัง commit
+        long txId = productRepository.currentTransactionId();
+        TransactionHooks.afterCommit(() -> reservationEngine.consume(requestId, productId, fulfillQty, txId));
+        eventPublisher.publishEvent(new StockLevelChangedEvent(productId, -fulfillQty, txId));
 
-        // 14. & 16. Post-Fulfillment Actions
-        checkAndUpdateRequestAndOrderStatus(item.getRequestId(), item.getProductId(), fulfillQty);
+        // 14. & 16. Post-Fulfillment Actions (ใช้ตัวนับ open_items ที่อัปเดตไปพร้อมกับ RequestItem แทนการ COUNT)
+        if (fulfillment.getOrderId() != null) {
+            orderRepository.updateOrderItemFulfillment(fulfillment.getOrderId(), productId, fulfillQty);
+            // Order อาจส่งครบแล้ว ให้หน้าจอฝ่ายขายโหลดสถานะใหม่
+            eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.READY_TO_CLOSE_ORDERS, WorkQueueChangedEvent.CHANGED, fulfillment.getOrderId()));
+        }
+        if (fulfillment.isRequestCompleted() && !requestRepository.closeFullyFulfilled(List.of(requestId)).isEmpty()) {
+            reservationRepository.deleteByRequest(requestId);
+            TransactionHooks.afterCommit(() -> reservationEngine.release(requestId, txId));
+            RequestService.publishClosed(eventPublisher, requestId);
+        } else {
+            eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.APPROVED_REQUESTS, WorkQueueChangedEvent.CHANGED, requestId));
+        }
     }
 
-    // แก้ไข: เปลี่ยน Type ของ ID ทั้งหมดเป็น String
-    private void checkAndUpdateRequestAndOrderStatus(String requestId, String productId, int fulfillQty) {
-        if (requestRepository.areAllItemsFulfilled(requestId)) {
-            requestRepository.updateRequestStatus(requestId, "Closed");
+    // เบิกหลายรายการพร้อมกัน: quantities คือ requestItemId -> จำนวนที่เบิก
+    // ตรวจสอบทุกรายการก่อน แล้วอัปเดตด้วย JDBC batch และตรวจสถานะครั้งเดียวต่อ Request
+    @Transactional
+    public void fulfillItems(Map<String, Integer> quantities, String warehouseStaffId) {
+        if (quantities.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ไม่มีรายการเบิก");
+        }
+        for (Map.Entry<String, Integer> e : quantities.entrySet()) {
+            if (e.getKey() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "กรุณาระบุรายการเบิก (requestItemId is required)");
+            }
+            if (e.getValue() == null || e.getValue() <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "จำนวนที่เบิกต้องมากกว่า 0: " + e.getKey());
+            }
+        }
+
+        List<RequestItem> items = requestRepository.findItemsByIdsForUpdate(quantities.keySet());
+        if (items.size() != quantities.size()) {
+            Set<String> missing = new LinkedHashSet<>(quantities.keySet());
+            items.forEach(i -> missing.remove(i.getRequestItemId()));
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบรายการเบิกที่ระบุ: " + String.join(", ", missing));
+        }
+
+        Map<String, Integer> perProduct = new TreeMap<>(); // เรียงตาม product_id เพื่อลดโอกาส deadlock
+        Map<String, Map<String, Integer>> perRequest = new TreeMap<>();
+        Map<String, Integer> completedPerRequest = new TreeMap<>(); // จำนวนรายการที่จะเบิกครบในครั้งนี้
+        List<String> exceeded = new ArrayList<>();
+        for (RequestItem item : items) {
+            int qty = quantities.get(item.getRequestItemId());
+            if (qty > item.getRemainingQty()) {
+                exceeded.add(item.getRequestItemId());
+            } else if (qty == item.getRemainingQty()) {
+                completedPerRequest.merge(item.getRequestId(), 1, Integer::sum);
+            }
+            perProduct.merge(item.getProductId(), qty, Integer::sum);
+            perRequest.computeIfAbsent(item.getRequestId(), k -> new TreeMap<>()).merge(item.getProductId(), qty, Integer::sum);
+        }
+        if (!exceeded.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "จำนวนที่เบิกเกินกว่าที่เหลืออยู่: " + String.join(", ", exceeded));
+        }
+        List<String> reservedElsewhere = new ArrayList<>();
+        perRequest.forEach((requestId, byProduct) -> byProduct.forEach((productId, qty) -> {
+            if (!reservationEngine.canFulfill(requestId, productId, qty)) {
+                reservedElsewhere.add(productId);
+            }
+        }));
+        if (!reservedElsewhere.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังถูกจองไว้สำหรับคำขออื่น: " + String.join(", ", reservedElsewhere));
         }
 
-        Request request = requestRepository.findById(requestId);
-        if (request != null && request.getOrderId() != null) {
-            orderRepository.updateOrderItemFulfillment(request.getOrderId(), productId, fulfillQty);
+        // ① ตัด Stock แบบมีเงื่อนไข ถ้าสินค้าใดไม่พอให้ rollback ทั้ง batch
+        List<String> insufficient = productRepository.decrementQuantitiesIfAvailable(perProduct);
+        if (!insufficient.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังไม่เพียงพอ: " + String.join(", ", insufficient));
         }
+        // ลดยอดจองของแต่ละคำขอ แล้วตรวจยอดจองของคำขออื่นใน database (ถือ lock ของ product อยู่แล้ว)
+        reservationRepository.consumeAll(perRequest);
+        List<String> overReserved = productRepository.findOverReserved(perProduct.keySet());
+        if (!overReserved.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "สินค้าในคลังถูกจองไว้สำหรับคำขออื่น: " + String.join(", ", overReserved));
+        }
+
+        // ② Update RequestItem
+        requestRepository.updateItemFulfillments(quantities);
+        if (!completedPerRequest.isEmpty()) {
+            requestRepository.decrementOpenItems(completedPerRequest);
+        }
+
+        // ③ Update OrderItem ของ Order ที่ผูกกับ Request
+        Set<String> requestIds = items.stream().map(RequestItem::getRequestId).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, String> orderIdByRequest = new HashMap<>();
+        for (Request request : requestRepository.findByIds(requestIds)) {
+            if (request.getOrderId() != null) {
+                orderIdByRequest.put(request.getRequestId(), request.getOrderId());
+            }
+        }
+        Map<String, Map<String, Integer>> perOrder = new TreeMap<>();
+        for (RequestItem item : items) {
+            String orderId = orderIdByRequest.get(item.getRequestId());
+            if (orderId != null) {
+                perOrder.computeIfAbsent(orderId, k -> new TreeMap<>())
+                        .merge(item.getProductId(), quantities.get(item.getRequestItemId()), Integer::sum);
+            }
+        }
+        if (!perOrder.isEmpty()) {
+            orderRepository.updateOrderItemFulfillments(perOrder);
+            perOrder.keySet().forEach(orderId ->
+                    eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.READY_TO_CLOSE_ORDERS, WorkQueueChangedEvent.CHANGED, orderId)));
+        }
+
+        // ④ Insert StockTransaction (OUT) ทั้งหมดใน batch เดียว
+        List<StockTransaction> transactions = new ArrayList<>(items.size());
+        for (RequestItem item : items) {
+            StockTransaction transaction = new StockTransaction();
+            transaction.setTransactionId(idGenerator.next("ST-"));
+            transaction.setType("OUT");
+            transaction.setProductId(item.getProductId());
+            transaction.setQuantity(quantities.get(item.getRequestItemId()));
+            transaction.setStaffId(warehouseStaffId);
+            transaction.setDescription("Fulfill Request ID " + item.getRequestId());
+            transactions.add(transaction);
+        }
+        ledgerWriter.recordAll(transactions);
+
+        // ⑤ ลดยอดจองในหน่วยความจำหลัง commit
+        long txId = productRepository.currentTransactionId();
+        TransactionHooks.afterCommit(() -> perRequest.forEach((requestId, byProduct) ->
+                byProduct.forEach((productId, qty) -> reservationEngine.consume(requestId, productId, qty, txId))));
+        perProduct.forEach((productId, qty) -> eventPublisher.publishEvent(new StockLevelChangedEvent(productId, -qty, txId)));
+
+        // ⑥ ปิด Request ที่เบิกครบแล้ว (ครั้งเดียวสำหรับทุก Request ที่เกี่ยวข้อง)
+        List<String> closed = requestRepository.closeFullyFulfilled(requestIds);
+        if (!closed.isEmpty()) {
+            reservationRepository.deleteByRequests(closed);
+            TransactionHooks.afterCommit(() -> closed.forEach(requestId -> reservationEngine.release(requestId, txId)));
+        }
+        for (String requestId : requestIds) {
+            if (closed.contains(requestId)) {
+                RequestService.publishClosed(eventPublisher, requestId);
+            } else {
+                eventPublisher.publishEvent(new WorkQueueChangedEvent(WorkQueueChangedEvent.APPROVED_REQUESTS, WorkQueueChangedEvent.CHANGED, requestId));
+            }
+        }
+    }
+
+
+    @Transactional(readOnly = true)
+    public PageResult<StockTransaction> getTransactions(StockTransactionFilter filter, int limit, String cursor) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit ต้องอยู่ระหว่าง 1 ถึง " + MAX_PAGE_SIZE);
+        }
+        LocalDateTime afterDate = null;
+        String afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String[] key = KeysetCursor.decode(cursor, 2);
+                afterDate = LocalDateTime.parse(key[0]);
+                afterId = key[1];
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "cursor ไม่ถูกต้อง");
+            }
+        }
+
+        // ดึงเกินมา 1 แถวเพื่อรู้ว่ามีหน้าถัดไปหรือไม่
+        List<StockTransaction> rows = stockTransactionRepository.findPage(filter, afterDate, afterId, limit + 1);
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            StockTransaction last = rows.get(limit - 1);
+            nextCursor = KeysetCursor.encode(last.getTransactionDate().toString(), last.getTransactionId());
+        }
+        return new PageResult<>(rows, nextCursor);
     }
-    public List<StockTransaction> getAllTransactions() {
-        return stockTransactionRepository.findAll();
+
+    // ส่งทุกแถวตามเงื่อนไขให้ consumer ทีละแถว โดยไม่เก็บทั้งหมดไว้ใน memory
+    @Transactional(readOnly = true)
+    public void streamTransactions(StockTransactionFilter filter, Consumer<StockTransaction> consumer) {
+        stockTransactionRepository.streamAll(filter, consumer);
     }
 
 }
\ No newline at end of file
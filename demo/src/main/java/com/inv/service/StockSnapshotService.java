@@ -0,0 +1,96 @@
+package com.inv.service;
+
+import com.inv.model.Product;
+import com.inv.model.StockLevel;
+import com.inv.repo.ProductRepository;
+import com.inv.repo.StockSnapshotRepository;
+import com.inv.repo.StockTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// ยอดคงเหลือย้อนหลัง: ใช้ snapshot ที่ใกล้ที่สุด + ผลรวม ledger ระหว่าง snapshot กับเวลาที่ถาม
+// ทำให้ query ย้อนหลังอ่าน ledger ไม่เกินช่วงห่างของ snapshot ไม่ว่า ledger จะเก่าแค่ไหน
+@Service
+public class StockSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockSnapshotService.class);
+
+    @Autowired
+    private StockSnapshotRepository snapshotRepository;
+    @Autowired
+    private StockTransactionRepository stockTransactionRepository;
+    @Autowired
+    private ProductRepository productRepository;
+
+    // ค่าเริ่มต้น: ทุกวันเวลาเที่ยงคืน
+    // REPEATABLE READ: เวลาของ snapshot กับยอดที่บันทึกมาจาก snapshot ของ database ชุดเดียวกัน โดยไม่ต้อง lock ตาราง Product
+    // (ไม่ใช้ readOnly เพราะต้อง INSERT และ readOnly จะถูกส่งไป replica)
+    @Scheduled(cron = "${stock.snapshot.cron:0 0 0 * * *}")
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public LocalDateTime takeSnapshot() {
+        LocalDateTime snapshotAt = snapshotRepository.currentTimestamp();
+        int rows = snapshotRepository.saveSnapshot(snapshotAt);
+        log.info("Stock snapshot at {}: {} products", snapshotAt, rows);
+        return snapshotAt;
+    }
+
+    @Transactional(readOnly = true)
+    public StockLevel getQuantityAt(String productId, LocalDateTime at) {
+        Product product = productRepository.findById(productId);
+        if (product == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบสินค้าที่ระบุ");
+        }
+
+        LocalDateTime before = snapshotRepository.findLatestAtOrBefore(at);
+        if (before != null) {
+            // เดินหน้าจาก snapshot ก่อนหน้า
+            int quantity = snapshotRepository.findQuantity(before, productId)
+                    + stockTransactionRepository.sumNetMovement(productId, before, at);
+            return new StockLevel(productId, quantity, at);
+        }
+
+        // ไม่มี snapshot ก่อนเวลาที่ถาม: ย้อนกลับจาก snapshot ถัดไป หรือจากยอดปัจจุบัน
+        LocalDateTime after = snapshotRepository.findEarliestAfter(at);
+        int base = after != null ? snapshotRepository.findQuantity(after, productId) : product.getQuantity();
+        int quantity = base - stockTransactionRepository.sumNetMovement(productId, at, after);
+        return new StockLevel(productId, quantity, at);
+    }
+
+    @Transactional(readOnly = true)
+    public List<StockLevel> getQuantitiesAt(LocalDateTime at) {
+        List<Product> products = productRepository.findAll();
+        List<StockLevel> levels = new ArrayList<>(products.size());
+
+        LocalDateTime before = snapshotRepository.findLatestAtOrBefore(at);
+        if (before != null) {
+            Map<String, Integer> base = snapshotRepository.findQuantities(before);
+            Map<String, Integer> net = stockTransactionRepository.sumNetMovementByProduct(before, at);
+            for (Product p : products) {
+                int quantity = base.getOrDefault(p.getProductId(), 0) + net.getOrDefault(p.getProductId(), 0);
+                levels.add(new StockLevel(p.getProductId(), quantity, at));
+            }
+            return levels;
+        }
+
+        LocalDateTime after = snapshotRepository.findEarliestAfter(at);
+        Map<String, Integer> base = after != null ? snapshotRepository.findQuantities(after) : null;
+        Map<String, Integer> net = stockTransactionRepository.sumNetMovementByProduct(at, after);
+        for (Product p : products) {
+            int current = base != null ? base.getOrDefault(p.getProductId(), 0) : p.getQuantity();
+            levels.add(new StockLevel(p.getProductId(), current - net.getOrDefault(p.getProductId(), 0), at));
+        }
+        return levels;
+    }
+}
@@ -1,23 +1,46 @@
 package com.inv.service;
 
+import com.inv.model.BulkResult;
+import com.inv.model.PageResult;
 import com.inv.model.Supplier;
 import com.inv.repo.SupplierRepository;
+import com.inv.util.CsvReader;
+import com.inv.util.IdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID; // Import เพิ่ม
+import java.util.Set;
 
 @Service
 public class SupplierService {
 
+    private static final Logger log = LoggerFactory.getLogger(SupplierService.class);
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
     @Autowired
     private SupplierRepository supplierRepository;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ReorderEngine reorderEngine;
 
-    public List<Supplier> getAllSuppliers() {
-        return supplierRepository.findAll();
+    @Transactional(readOnly = true)
+    public PageResult<Supplier> getSuppliers(String sort, String cursor, int limit) {
+        return Pages.fetch(limit, () -> supplierRepository.findPage(sort, cursor, limit));
     }
 
     public Supplier getSupplierById(String id) { // รับ String id
@@ -37,10 +60,141 @@ public class SupplierService {
         }
 
         // เพิ่ม: สร้าง ID ที่นี่
-        String supplierId = "SUP-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        String supplierId = idGenerator.next("SUP-");
         supplier.setSupplierId(supplierId);
 
         supplierRepository.save(supplier);
         return supplier;
     }
-}
\ No newline at end of file
+
+    // null = ใช้ค่าเริ่มต้นของระบบ (stock.reorder.default-lead-time-days)
+    public void updateLeadTime(String supplierId, Integer leadTimeDays) {
+        if (leadTimeDays != null && (leadTimeDays < 0 || leadTimeDays > 365)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ระยะเวลาส่งของต้องอยู่ระหว่าง 0 ถึง 365 วัน");
+        }
+        if (!supplierRepository.updateLeadTime(supplierId, leadTimeDays)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ไม่พบผู้จำหน่ายที่ระบุ");
+        }
+        reorderEngine.setLeadTime(supplierId, leadTimeDays);
+    }
+
+    // นำเข้าผู้จำหน่ายจาก CSV แบบ stream: supplierName,address,phone,email (บรรทัดหัวตารางเป็น optional)
+    // ตรวจอีเมลซ้ำภายในไฟล์ด้วย Set และซ้ำกับในระบบด้วย query เดียวต่อ batch
+    // แต่ละ batch commit แยกกัน; batch ที่บันทึกไม่สำเร็จจะรายงานเป็น error รายบรรทัด
+    public BulkResult importSuppliers(BufferedReader reader) throws IOException {
+        BulkResult result = new BulkResult();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<SupplierLine> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        Set<String> seenEmails = new HashSet<>();
+        CsvReader csv = new CsvReader(reader);
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            int lineNumber = csv.getLineNumber();
+            if (csv.isFirstRecord() && "supplierName".equalsIgnoreCase(fields.get(0))) {
+                continue; // ข้ามหัวตาราง
+            }
+            Supplier supplier = new Supplier();
+            supplier.setSupplierName(CsvReader.field(fields, 0));
+            supplier.setAddress(CsvReader.field(fields, 1));
+            supplier.setPhone(CsvReader.field(fields, 2));
+            supplier.setEmail(CsvReader.field(fields, 3));
+
+            String error = validateLine(supplier);
+            if (error != null) {
+                result.error(lineNumber, error);
+                continue;
+            }
+            if (supplier.getEmail() != null && !seenEmails.add(supplier.getEmail())) {
+                result.error(lineNumber, "อีเมลซ้ำกับบรรทัดก่อนหน้าในไฟล์");
+                continue;
+            }
+            batch.add(new SupplierLine(lineNumber, supplier));
+            if (batch.size() >= IMPORT_BATCH_SIZE) {
+                flushSuppliers(tx, batch, result);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushSuppliers(tx, batch, result);
+        }
+        return result;
+    }
+
+    // ตรวจค่าตามข้อจำกัดของตาราง Supplier ก่อน batch insert (แถวที่ยาวเกินจะทำให้ batch ล้มทั้งชุด)
+    private String validateLine(Supplier supplier) {
+        if (supplier.getSupplierName() == null) {
+            return "กรุณาระบุชื่อผู้จำหน่าย (Supplier name is required)";
+        }
+        if (supplier.getSupplierName().length() > 100) {
+            return "ชื่อผู้จำหน่ายยาวเกิน 100 ตัวอักษร";
+        }
+        if (supplier.getAddress() != null && supplier.getAddress().length() > 200) {
+            return "ที่อยู่ยาวเกิน 200 ตัวอักษร";
+        }
+        if (supplier.getPhone() != null && supplier.getPhone().length() > 20) {
+            return "เบอร์โทรศัพท์ยาวเกิน 20 ตัวอักษร";
+        }
+        if (supplier.getEmail() != null && supplier.getEmail().length() > 100) {
+            return "อีเมลยาวเกิน 100 ตัวอักษร";
+        }
+        return null;
+    }
+
+    private void flushSuppliers(TransactionTemplate tx, List<SupplierLine> batch, BulkResult result) {
+        BulkResult chunk = new BulkResult();
+        try {
+            tx.executeWithoutResult(status -> saveSuppliers(batch, chunk));
+        } catch (RuntimeException e) {
+            // batch นี้ rollback ทั้งหมด: รายงานทุกบรรทัดเพื่อให้ส่งใหม่ได้
+            log.warn("Supplier import batch of {} lines failed: {}", batch.size(), e.getMessage());
+            batch.forEach(line -> result.error(line.lineNumber, "บันทึกไม่สำเร็จ กรุณาส่งบรรทัดนี้ใหม่"));
+            return;
+        }
+        for (int i = 0; i < chunk.getSucceeded(); i++) {
+            result.success();
+        }
+        chunk.getErrors().forEach(error -> result.error(error.getLine(), error.getMessage()));
+    }
+
+    private void saveSuppliers(List<SupplierLine> batch, BulkResult result) {
+        Set<String> emails = new HashSet<>();
+        for (SupplierLine line : batch) {
+            if (line.supplier.getEmail() != null) {
+                emails.add(line.supplier.getEmail());
+            }
+        }
+        Set<String> existingEmails = emails.isEmpty() ? Set.of() : supplierRepository.findExistingEmails(emails);
+
+        List<SupplierLine> accepted = new ArrayList<>(batch.size());
+        for (SupplierLine line : batch) {
+            if (line.supplier.getEmail() != null && existingEmails.contains(line.supplier.getEmail())) {
+                result.error(line.lineNumber, "อีเมลนี้มีในระบบแล้ว (Email already exists)");
+                continue;
+            }
+            line.supplier.setSupplierId(idGenerator.next("SUP-"));
+            accepted.add(line);
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        int[] counts = supplierRepository.saveAll(accepted.stream().map(l -> l.supplier).toList());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) { // อีเมลถูกเพิ่มเข้ามาหลังตรวจ (ON CONFLICT DO NOTHING)
+                result.error(accepted.get(i).lineNumber, "อีเมลนี้มีในระบบแล้ว (Email already exists)");
+            } else {
+                result.success();
+            }
+        }
+    }
+
+    // หนึ่งบรรทัดของการนำเข้าผู้จำหน่าย
+    private static class SupplierLine {
+        final int lineNumber;
+        final Supplier supplier;
+
+        SupplierLine(int lineNumber, Supplier supplier) {
+            this.lineNumber = lineNumber;
+            this.supplier = supplier;
+        }
+    }
+}
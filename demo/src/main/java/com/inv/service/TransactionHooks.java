@@ -0,0 +1,40 @@
+package com.inv.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// ผูกงานในหน่วยความจำเข้ากับผลของ transaction ปัจจุบัน
+final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    // รันหลัง commit; ถ้าไม่มี transaction ให้รันทันที
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // รันเมื่อ transaction ถูก rollback; ถ้าไม่มี transaction จะไม่ทำอะไร
+    static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
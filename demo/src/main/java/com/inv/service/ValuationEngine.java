@@ -0,0 +1,272 @@
+package com.inv.service;
+
+import com.inv.event.ProductPriceChangedEvent;
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.model.InventoryValuation;
+import com.inv.model.Product;
+import com.inv.repo.DbSnapshot;
+import com.inv.repo.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// มูลค่าสินค้าคงคลังแบบ running total ต่อผู้จำหน่ายและรวมทั้งหมด (BigDecimal ทั้งหมด ไม่มีการปัดเศษ)
+// อัปเดตด้วยผลต่างจาก StockLevelChangedEvent (delta x ราคา) และ ProductPriceChangedEvent ((ราคาใหม่ - เก่า) x จำนวน)
+// คำนวณใหม่ทั้งหมดจาก database เป็นระยะ; การเปลี่ยนแปลงที่เกิดระหว่างอ่าน database จะถูกนำไปใช้ซ้ำกับผลที่อ่านได้
+// เฉพาะ transaction ที่ snapshot ของการอ่านนั้นยังไม่เห็น (ดู DbSnapshot)
+// สินค้าที่ยังไม่รู้จัก (เช่น เพิ่งสร้าง) อ่านทีละแถวพร้อม snapshot ของตัวเอง และตัดการเปลี่ยนแปลงที่ snapshot นั้นเห็นแล้วในลักษณะเดียวกัน
+// (ออกแบบสำหรับ application instance เดียว)
+@Component
+public class ValuationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ValuationEngine.class);
+    private static final String NO_SUPPLIER = "";
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final class Holding {
+        final String supplierKey;
+        // snapshot ที่ใช้อ่านแถวนี้ทีละแถว (null = อ่านมากับ state ทั้งชุด ใช้ snapshot ของ state)
+        final DbSnapshot readAt;
+        int quantity;
+        BigDecimal price;
+
+        Holding(String supplierId, int quantity, BigDecimal price) {
+            this(supplierId, quantity, price, null);
+        }
+
+        Holding(String supplierId, int quantity, BigDecimal price, DbSnapshot readAt) {
+            this.supplierKey = supplierId != null ? supplierId : NO_SUPPLIER;
+            this.readAt = readAt;
+            this.quantity = quantity;
+            this.price = price != null ? price : BigDecimal.ZERO;
+        }
+    }
+
+    // แถวสินค้าที่อ่านทีละแถว พร้อม snapshot ของการอ่านนั้น
+    private static final class Row {
+        final Product product;
+        final DbSnapshot readAt;
+
+        Row(Product product, DbSnapshot readAt) {
+            this.product = product;
+            this.readAt = readAt;
+        }
+
+        Holding toHolding() {
+            return new Holding(product.getSupplierId(), product.getQuantity(), product.getPricePerUnit(), readAt);
+        }
+    }
+
+    private static final class State {
+        final Map<String, Holding> holdings = new HashMap<>();
+        final Map<String, BigDecimal> bySupplier = new HashMap<>();
+        BigDecimal total = BigDecimal.ZERO;
+
+        void put(String productId, Holding h) {
+            if (holdings.putIfAbsent(productId, h) == null) {
+                add(h.supplierKey, h.price.multiply(BigDecimal.valueOf(h.quantity)));
+            }
+        }
+
+        void addQuantity(String productId, int delta, long txId) {
+            Holding h = holdings.get(productId);
+            if (h != null && (h.readAt == null || !h.readAt.includes(txId))) {
+                h.quantity += delta;
+                add(h.supplierKey, h.price.multiply(BigDecimal.valueOf(delta)));
+            }
+        }
+
+        void setPrice(String productId, BigDecimal price) {
+            Holding h = holdings.get(productId);
+            if (h != null) {
+                add(h.supplierKey, price.subtract(h.price).multiply(BigDecimal.valueOf(h.quantity)));
+                h.price = price;
+            }
+        }
+
+        private void add(String supplierKey, BigDecimal change) {
+            bySupplier.merge(supplierKey, change, BigDecimal::add);
+            total = total.add(change);
+        }
+    }
+
+    // การเปลี่ยนแปลงที่รอใช้ซ้ำ; txId เป็น null = ใช้ซ้ำเสมอ (การตั้งราคาใช้ซ้ำกี่ครั้งก็ได้ผลเดิม)
+    private static final class Change {
+        final Long txId;
+        final Consumer<State> change;
+
+        Change(Long txId, Consumer<State> change) {
+            this.txId = txId;
+            this.change = change;
+        }
+
+        boolean notIn(DbSnapshot snapshot) {
+            return txId == null || !snapshot.includes(txId);
+        }
+    }
+
+    // null = ยังไม่โหลด
+    private State state;
+    // snapshot ของ database ที่ใช้คำนวณ state
+    private DbSnapshot snapshot;
+    // ไม่เป็น null ระหว่าง reconcile อ่าน database: เก็บการเปลี่ยนแปลงไว้ใช้ซ้ำกับผลที่อ่านได้
+    private List<Change> replay;
+    private LocalDateTime reconciledAt;
+    private final Object reconcileLock = new Object();
+
+    // ตอบจากหน่วยความจำ (โหลดครั้งแรกเมื่อถูกเรียก)
+    public InventoryValuation getValuation() {
+        synchronized (this) {
+            if (state != null) {
+                return snapshot();
+            }
+        }
+        synchronized (reconcileLock) {
+            synchronized (this) {
+                if (state != null) {
+                    return snapshot();
+                }
+            }
+            reconcile();
+        }
+        synchronized (this) {
+            return snapshot();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockLevelChanged(StockLevelChangedEvent event) {
+        String productId = event.getProductId();
+        Row row = loadIfUnknown(productId);
+        apply(event.getTxId(), s -> {
+            if (row != null) {
+                s.put(productId, row.toHolding());
+            }
+            s.addQuantity(productId, event.getDelta(), event.getTxId());
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceChanged(ProductPriceChangedEvent event) {
+        String productId = event.getProductId();
+        Row row = loadIfUnknown(productId);
+        apply(null, s -> {
+            if (row != null) {
+                s.put(productId, row.toHolding());
+            }
+            s.setPrice(productId, event.getPricePerUnit());
+        });
+    }
+
+    // ค่าเริ่มต้น: ทุก 10 นาที เฉพาะเมื่อเคยโหลดแล้ว
+    @Scheduled(fixedDelayString = "${valuation.reconcile-ms:600000}", initialDelayString = "${valuation.reconcile-ms:600000}")
+    public void scheduledReconcile() {
+        synchronized (this) {
+            if (state == null) {
+                return; // ยังไม่มีใครอ่าน ไม่ต้องโหลดล่วงหน้า
+            }
+        }
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("Inventory valuation reconcile failed: {}", e.getMessage());
+        }
+    }
+
+    // คำนวณใหม่ทั้งหมดจาก database แล้วแทนที่ running total (ตรวจพบค่าคลาดเคลื่อนจะ log ไว้)
+    public void reconcile() {
+        synchronized (reconcileLock) {
+            synchronized (this) {
+                replay = new ArrayList<>();
+            }
+            State fresh = new State();
+            DbSnapshot freshSnapshot;
+            try {
+                // snapshot และยอดสินค้าต้องมาจาก snapshot เดียวกัน จึงอ่านใน transaction แบบ REPEATABLE READ (ไม่ใช่ readOnly: cache ต้องโหลดจาก primary)
+                TransactionTemplate tx = new TransactionTemplate(transactionManager);
+                tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+                freshSnapshot = tx.execute(status -> {
+                    DbSnapshot read = productRepository.currentSnapshot();
+                    productRepository.streamValuationRows(p ->
+                            fresh.put(p.getProductId(), new Holding(p.getSupplierId(), p.getQuantity(), p.getPricePerUnit())));
+                    return read;
+                });
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    replay = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                // การเปลี่ยนแปลงที่ commit ก่อน snapshot ถูกนับในยอดที่อ่านได้แล้ว
+                replay.stream().filter(c -> c.notIn(freshSnapshot)).forEach(c -> c.change.accept(fresh));
+                replay = null;
+                if (state != null && state.total.compareTo(fresh.total) != 0) {
+                    log.warn("Inventory valuation drift corrected: {} -> {}", state.total, fresh.total);
+                }
+                state = fresh;
+                snapshot = freshSnapshot;
+                reconciledAt = LocalDateTime.now();
+            }
+        }
+    }
+
+    // การเปลี่ยนแปลงของสินค้าที่ยังไม่รู้จัก (เช่น สินค้าที่เพิ่งสร้าง): อ่านแถวจาก database พร้อม snapshot ใน transaction เดียวกัน
+    // ยอดที่อ่านได้อาจรวมการเปลี่ยนแปลงที่ listener ยังไม่ได้รับแล้ว จึงตัดด้วย snapshot นี้แทนการลบ delta ออก
+    private Row loadIfUnknown(String productId) {
+        synchronized (this) {
+            if (state == null || state.holdings.containsKey(productId)) {
+                return null;
+            }
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        return tx.execute(status -> {
+            DbSnapshot read = productRepository.currentSnapshot();
+            Product product = productRepository.findById(productId);
+            return product != null ? new Row(product, read) : null;
+        });
+    }
+
+    // listener อาจทำงานหลัง reconcile ที่เห็น commit นั้นแล้ว จึงตรวจกับ snapshot ของ state ทุกครั้ง
+    private synchronized void apply(Long txId, Consumer<State> change) {
+        Change c = new Change(txId, change);
+        if (state != null && c.notIn(snapshot)) {
+            change.accept(state);
+        }
+        if (replay != null) {
+            replay.add(c);
+        }
+    }
+
+    private InventoryValuation snapshot() {
+        InventoryValuation valuation = new InventoryValuation();
+        valuation.setTotalValue(state.total);
+        List<InventoryValuation.SupplierValue> suppliers = new ArrayList<>(state.bySupplier.size());
+        state.bySupplier.forEach((supplierKey, value) -> suppliers.add(
+                new InventoryValuation.SupplierValue(NO_SUPPLIER.equals(supplierKey) ? null : supplierKey, value)));
+        suppliers.sort(Comparator.comparing(InventoryValuation.SupplierValue::getValue).reversed());
+        valuation.setSuppliers(suppliers);
+        valuation.setReconciledAt(reconciledAt);
+        return valuation;
+    }
+}
@@ -0,0 +1,133 @@
+package com.inv.service;
+
+import com.inv.event.WorkQueueChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.WebInvocationPrivilegeEvaluator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// ส่งการเปลี่ยนแปลงของคิวงานให้หน้าจอผ่าน Server-Sent Events หลัง commit
+// แต่ละ subscriber ได้รับเฉพาะคิวที่ตนเรียก endpoint ของคิวนั้นได้ (ถามกฎจาก SecurityConfig โดยตรง)
+@Component
+public class WorkQueueFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkQueueFeed.class);
+
+    // คิว -> GET endpoint ของคิวนั้น
+    private static final Map<String, String> QUEUE_ENDPOINTS = Map.of(
+            WorkQueueChangedEvent.PENDING_REQUESTS, "/requests/pending",
+            WorkQueueChangedEvent.APPROVED_REQUESTS, "/stock/approved-requests",
+            WorkQueueChangedEvent.READY_TO_CLOSE_REQUESTS, "/requests/ready-to-close",
+            WorkQueueChangedEvent.READY_TO_CLOSE_ORDERS, "/orders/ready-to-close",
+            WorkQueueChangedEvent.LOW_STOCK, "/stock/low"
+    );
+
+    @Autowired
+    private WebInvocationPrivilegeEvaluator privilegeEvaluator;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // ส่งจาก thread แยก เพื่อไม่ให้ client ที่ช้าถ่วง thread ที่เพิ่ง commit
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "work-queue-feed");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${events.sse.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final Set<String> queues;
+
+        Subscriber(SseEmitter emitter, Set<String> queues) {
+            this.emitter = emitter;
+            this.queues = queues;
+        }
+    }
+
+    public SseEmitter subscribe(Authentication authentication) {
+        Set<String> queues = queuesFor(authentication);
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, queues);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // แจ้งคิวที่ subscribe ได้ให้ client ทราบ
+        send(subscriber, SseEmitter.event().name("subscribed").data(queues, MediaType.APPLICATION_JSON));
+        return emitter;
+    }
+
+    // คิวที่ผู้ใช้นี้เรียก endpoint ได้
+    Set<String> queuesFor(Authentication authentication) {
+        Set<String> queues = new HashSet<>();
+        QUEUE_ENDPOINTS.forEach((queue, endpoint) -> {
+            if (privilegeEvaluator.isAllowed("", endpoint, "GET", authentication)) {
+                queues.add(queue);
+            }
+        });
+        return queues;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWorkQueueChanged(WorkQueueChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        sender.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.queues.contains(event.getQueue())) {
+                    send(subscriber, SseEmitter.event().name(event.getQueue()).data(event, MediaType.APPLICATION_JSON));
+                }
+            }
+        });
+    }
+
+    // comment line ว่าง ๆ กัน proxy ตัด connection ที่เงียบนาน และเก็บกวาด client ที่หลุดไปแล้ว
+    @Scheduled(fixedRateString = "${events.sse.heartbeat-ms:25000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        sender.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                send(subscriber, SseEmitter.event().comment("heartbeat"));
+            }
+        });
+    }
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            log.debug("Dropped work queue subscriber: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+    }
+}
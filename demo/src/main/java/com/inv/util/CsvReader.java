@@ -0,0 +1,99 @@
+package com.inv.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// อ่าน CSV ทีละบรรทัดจาก stream (ไม่โหลดทั้งไฟล์เข้า memory)
+// รองรับ field ที่ครอบด้วย "..." และ "" ภายใน field; ไม่รองรับการขึ้นบรรทัดใหม่ภายใน field
+public class CsvReader {
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private int records;
+
+    public CsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    // หมายเลขบรรทัดของ record ล่าสุดที่อ่าน (เริ่มที่ 1)
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    // record ล่าสุดเป็น record แรกของไฟล์หรือไม่ (ใช้ตรวจหัวตาราง แม้มีบรรทัดว่างนำหน้า)
+    public boolean isFirstRecord() {
+        return records == 1;
+    }
+
+    // คืน null เมื่อจบไฟล์; ข้ามบรรทัดว่าง และตัด UTF-8 BOM ที่ต้นไฟล์ (เช่น CSV ที่ save จาก Excel)
+    public List<String> next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+            if (lineNumber == 1) {
+                line = stripBom(line);
+            }
+        } while (line.isBlank());
+        records++;
+        return parseLine(line);
+    }
+
+    public static String stripBom(String line) {
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+
+    // ค่าของ field ที่ index หรือ null ถ้าไม่มีหรือว่าง
+    public static String field(List<String> fields, int index) {
+        if (index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    // ใช้ตอนเขียน CSV ออก: ครอบด้วย "..." เมื่อมี , " หรือขึ้นบรรทัดใหม่
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,71 @@
+package com.inv.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+// สร้าง ID แบบเรียงตามเวลา ไม่ซ้ำต่อ node และไม่ใช้ lock: PREFIX + 13 ตัวอักษร base36 (เช่น PROD-0AB12CD34EF56)
+// 63 bits = เวลา (ms ตั้งแต่ 2024-01-01, 41 bits) | node (10 bits) | sequence ภายใน ms เดียวกัน (12 bits)
+// ความยาวสูงสุด 5 + 13 = 18 ตัวอักษร ไม่เกิน VARCHAR(20); ID ใหม่มากกว่า ID เก่าเสมอเมื่อเรียงแบบข้อความ
+@Component
+public class IdGenerator {
+
+    private static final long EPOCH_MS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long NODE_MASK = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13; // 36^13 > 2^63
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private final long node;
+
+    // (เวลา << SEQUENCE_BITS) | sequence ของ ID ล่าสุด; เพิ่มขึ้นเสมอแม้นาฬิกาถอยหลัง
+    private final AtomicLong lastTick = new AtomicLong();
+
+    public IdGenerator(@Value("${app.id.node-id:-1}") long nodeId) {
+        this.node = (nodeId >= 0 ? nodeId : defaultNodeId()) & NODE_MASK;
+    }
+
+    public String next(String prefix) {
+        long tick = nextTick();
+        long value = ((tick >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+                | (node << SEQUENCE_BITS)
+                | (tick & SEQUENCE_MASK);
+
+        int prefixLength = prefix.length();
+        char[] chars = new char[prefixLength + ENCODED_LENGTH];
+        prefix.getChars(0, prefixLength, chars, 0);
+        for (int i = chars.length - 1; i >= prefixLength; i--) {
+            chars[i] = DIGITS[(int) (value % 36)];
+            value /= 36;
+        }
+        return new String(chars);
+    }
+
+    private long nextTick() {
+        long nowTick = (System.currentTimeMillis() - EPOCH_MS) << SEQUENCE_BITS;
+        while (true) {
+            long prev = lastTick.get();
+            // ถ้า sequence ใน ms นี้เต็ม จะยืมเวลาของ ms ถัดไป (ยังคงเรียงและไม่ซ้ำ)
+            long next = Math.max(prev + 1, nowTick);
+            if (lastTick.compareAndSet(prev, next)) {
+                return next;
+            }
+        }
+    }
+
+    // ไม่ได้กำหนด app.id.node-id: ใช้ hash ของ hostname และ pid (ควรกำหนดเองเมื่อรันหลาย instance)
+    private static long defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "localhost";
+        }
+        return (host + "/" + ManagementFactory.getRuntimeMXBean().getPid()).hashCode();
+    }
+}
@@ -0,0 +1,28 @@
+package com.inv.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// cursor แบบ opaque สำหรับ keyset pagination: เก็บค่าคีย์ของแถวสุดท้ายในหน้าที่แล้ว
+public final class KeysetCursor {
+
+    private static final String SEPARATOR = "\n";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(String... values) {
+        String raw = String.join(SEPARATOR, values);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // โยน IllegalArgumentException ถ้า cursor ไม่ถูกต้องหรือจำนวนค่าไม่ตรง
+    public static String[] decode(String cursor, int expectedValues) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] values = raw.split(SEPARATOR, -1);
+        if (values.length != expectedValues) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return values;
+    }
+}
@@ -0,0 +1,86 @@
+-- ========================
+-- Upgrade ฐานข้อมูลที่สร้างจาก schema.sql รุ่นก่อนหน้า ให้ตรงกับ schema.sql ปัจจุบัน
+-- รันซ้ำได้ (IF NOT EXISTS ทุกคำสั่ง และการเติมตัวนับคำนวณใหม่จากข้อมูลจริงเสมอ)
+-- ขั้นตอน deploy: หยุด application -> psql -v ON_ERROR_STOP=1 -d demo -f upgrade.sql -> เริ่ม application
+--   -> POST /reports/rollups/rebuild (ADMIN) เพื่อสร้างยอด rollup ของ ledger เดิม
+-- ========================
+
+-- คอลัมน์ใหม่
+ALTER TABLE Supplier ADD COLUMN IF NOT EXISTS lead_time_days INT CHECK (lead_time_days >= 0);
+ALTER TABLE "Order" ADD COLUMN IF NOT EXISTS open_items INT NOT NULL DEFAULT 0;
+ALTER TABLE "Order" ADD COLUMN IF NOT EXISTS open_requests INT NOT NULL DEFAULT 0;
+ALTER TABLE Request ADD COLUMN IF NOT EXISTS open_items INT NOT NULL DEFAULT 0;
+
+-- transaction_date เป็น NOT NULL (คีย์ของ keyset pagination บน /stock/transactions); แถวเดิมที่ไม่มีวันที่ถือว่าเก่าที่สุด
+UPDATE StockTransaction SET transaction_date = TIMESTAMP '1970-01-01 00:00:00' WHERE transaction_date IS NULL;
+ALTER TABLE StockTransaction ALTER COLUMN transaction_date SET NOT NULL;
+
+-- ADJUST ของ StockTransaction เก็บจำนวนแบบมีเครื่องหมาย
+ALTER TABLE StockTransaction DROP CONSTRAINT IF EXISTS stocktransaction_quantity_check;
+ALTER TABLE StockTransaction ADD CONSTRAINT stocktransaction_quantity_check CHECK (quantity > 0 OR (type = 'ADJUST' AND quantity <> 0));
+
+-- index สำหรับ keyset pagination และ ledger
+CREATE INDEX IF NOT EXISTS idx_supplier_name_id ON Supplier(supplier_name, supplier_id);
+CREATE INDEX IF NOT EXISTS idx_product_name_id ON Product(product_name, product_id);
+CREATE INDEX IF NOT EXISTS idx_customer_name_id ON Customer(customer_name, customer_id);
+CREATE INDEX IF NOT EXISTS idx_staff_name_id ON Staff(staff_name, staff_id);
+CREATE INDEX IF NOT EXISTS idx_staff_role_id ON Staff(role, staff_id);
+CREATE INDEX IF NOT EXISTS idx_order_date_id ON "Order"(order_date, order_id);
+CREATE INDEX IF NOT EXISTS idx_request_date_id ON Request(request_date, request_id);
+CREATE INDEX IF NOT EXISTS idx_stocktransaction_date_id ON StockTransaction(transaction_date DESC, transaction_id DESC);
+CREATE INDEX IF NOT EXISTS idx_stocktransaction_product_date ON StockTransaction(product_id, transaction_date);
+
+-- ตารางใหม่
+CREATE TABLE IF NOT EXISTS StockSnapshot (
+    snapshot_at TIMESTAMP NOT NULL,
+    product_id VARCHAR(20) REFERENCES Product(product_id) NOT NULL,
+    quantity INT NOT NULL,
+    PRIMARY KEY (snapshot_at, product_id)
+);
+
+CREATE TABLE IF NOT EXISTS StockReservation (
+    request_id VARCHAR(20) REFERENCES Request(request_id),
+    product_id VARCHAR(20) REFERENCES Product(product_id),
+    quantity INT NOT NULL CHECK (quantity >= 0),
+    PRIMARY KEY (request_id, product_id)
+);
+
+CREATE TABLE IF NOT EXISTS IdempotencyKey (
+    staff_id VARCHAR(20) NOT NULL,
+    idem_key VARCHAR(100) NOT NULL,
+    method VARCHAR(10) NOT NULL,
+    path VARCHAR(200) NOT NULL,
+    request_hash VARCHAR(64),
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    status INT,
+    content_type VARCHAR(100),
+    body BYTEA,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (staff_id, idem_key)
+);
+CREATE INDEX IF NOT EXISTS idx_idempotencykey_created ON IdempotencyKey(created_at);
+ALTER TABLE IdempotencyKey ADD COLUMN IF NOT EXISTS request_hash VARCHAR(64);
+
+CREATE TABLE IF NOT EXISTS StockDailyRollup (
+    day DATE NOT NULL,
+    product_id VARCHAR(20) REFERENCES Product(product_id) NOT NULL,
+    type VARCHAR(10) NOT NULL,
+    quantity BIGINT NOT NULL DEFAULT 0,
+    transaction_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, product_id, type)
+);
+CREATE INDEX IF NOT EXISTS idx_stockdailyrollup_product_day ON StockDailyRollup(product_id, day);
+
+CREATE TABLE IF NOT EXISTS StockDailyStaffRollup (
+    day DATE NOT NULL,
+    staff_id VARCHAR(20) REFERENCES Staff(staff_id) NOT NULL,
+    type VARCHAR(10) NOT NULL,
+    quantity BIGINT NOT NULL DEFAULT 0,
+    transaction_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, staff_id, type)
+);
+
+-- เติมตัวนับ open_items / open_requests จากข้อมูลเดิม
+UPDATE Request r SET open_items = (SELECT COUNT(*) FROM RequestItem ri WHERE ri.request_id = r.request_id AND ri.remaining_qty > 0);
+UPDATE "Order" o SET open_items = (SELECT COUNT(*) FROM OrderItem oi WHERE oi.order_id = o.order_id AND oi.remaining_qty > 0),
+    open_requests = (SELECT COUNT(*) FROM Request r WHERE r.order_id = o.order_id AND r.status <> 'Closed');
@@ -6,8 +6,10 @@ CREATE TABLE Supplier (
     supplier_name VARCHAR(100) NOT NULL,
     address VARCHAR(200),
     phone VARCHAR(20),
-    email VARCHAR(100) UNIQUE
+    email VARCHAR(100) UNIQUE,
+    lead_time_days INT CHECK (lead_time_days >= 0) -- ระยะเวลาส่งของ (วัน); NULL = ใช้ค่าเริ่มต้นของระบบ
 );
+CREATE INDEX idx_supplier_name_id ON Supplier(supplier_name, supplier_id);
 
 -- ========================
 -- Product
@@ -22,6 +24,7 @@ CREATE TABLE Product (
     supplier_id VARCHAR(20) REFERENCES Supplier(supplier_id),
     image_url VARCHAR(255)
 );
+CREATE INDEX idx_product_name_id ON Product(product_name, product_id);
 
 -- ========================
 -- Customer
@@ -33,6 +36,7 @@ CREATE TABLE Customer (
     phone VARCHAR(20),
     email VARCHAR(100) UNIQUE
 );
+CREATE INDEX idx_customer_name_id ON Customer(customer_name, customer_id);
 
 -- ========================
 -- Staff
@@ -46,6 +50,8 @@ CREATE TABLE Staff (
     password VARCHAR(100) NOT NULL,
     active BOOLEAN DEFAULT TRUE
 );
+CREATE INDEX idx_staff_name_id ON Staff(staff_name, staff_id);
+CREATE INDEX idx_staff_role_id ON Staff(role, staff_id);
 
 -- ========================
 -- "Order" (ใช้ Double Quote เพราะ Order เป็น Reserved Word)
@@ -56,8 +62,11 @@ CREATE TABLE "Order" (
     total_amount DECIMAL(12,2) DEFAULT 0 CHECK (total_amount >= 0),
     status VARCHAR(50) DEFAULT 'Pending',
     customer_id VARCHAR(20) REFERENCES Customer(customer_id),
-    staff_id VARCHAR(20) REFERENCES Staff(staff_id) -- แก้ไข: ลบ comma ที่เกินมา
+    staff_id VARCHAR(20) REFERENCES Staff(staff_id), -- แก้ไข: ลบ comma ที่เกินมา
+    open_items INT NOT NULL DEFAULT 0,    -- จำนวน OrderItem ที่ remaining_qty > 0
+    open_requests INT NOT NULL DEFAULT 0  -- จำนวน Request ของ Order นี้ที่ยังไม่ Closed
 );
+CREATE INDEX idx_order_date_id ON "Order"(order_date, order_id);
 -- ========================
 -- OrderItem
 -- ========================
@@ -84,8 +93,10 @@ CREATE TABLE Request (
     staff_id VARCHAR(20) REFERENCES Staff(staff_id),
     description TEXT,
     approved_by VARCHAR(20) REFERENCES Staff(staff_id),
-    approved_date TIMESTAMP
+    approved_date TIMESTAMP,
+    open_items INT NOT NULL DEFAULT 0 -- จำนวน RequestItem ที่ remaining_qty > 0
 );
+CREATE INDEX idx_request_date_id ON Request(request_date, request_id);
 
 -- ========================
 -- RequestItem
@@ -104,10 +115,77 @@ CREATE TABLE RequestItem (
 -- ========================
 CREATE TABLE StockTransaction (
     transaction_id VARCHAR(20) PRIMARY KEY,
-    transaction_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    transaction_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     type VARCHAR(10) CHECK (type IN ('IN','OUT','ADJUST')),
     product_id VARCHAR(20) REFERENCES Product(product_id) NOT NULL,
-    quantity INT NOT NULL CHECK (quantity > 0),
+    quantity INT NOT NULL,
+    staff_id VARCHAR(20) REFERENCES Staff(staff_id) NOT NULL,
+    description TEXT,
+    -- ADJUST เก็บจำนวนแบบมีเครื่องหมาย (ลบ = ปรับลด)
+    CONSTRAINT stocktransaction_quantity_check CHECK (quantity > 0 OR (type = 'ADJUST' AND quantity <> 0))
+);
+CREATE INDEX idx_stocktransaction_date_id ON StockTransaction(transaction_date DESC, transaction_id DESC);
+CREATE INDEX idx_stocktransaction_product_date ON StockTransaction(product_id, transaction_date);
+
+-- ========================
+-- StockSnapshot (ยอดคงเหลือรายสินค้า ณ เวลาที่ทำ snapshot สำหรับ query ย้อนหลัง)
+-- ========================
+CREATE TABLE StockSnapshot (
+    snapshot_at TIMESTAMP NOT NULL,
+    product_id VARCHAR(20) REFERENCES Product(product_id) NOT NULL,
+    quantity INT NOT NULL,
+    PRIMARY KEY (snapshot_at, product_id)
+);
+
+-- ========================
+-- StockReservation (ยอดจองสินค้าของคำขอเบิกที่อนุมัติแล้ว)
+-- ========================
+CREATE TABLE StockReservation (
+    request_id VARCHAR(20) REFERENCES Request(request_id),
+    product_id VARCHAR(20) REFERENCES Product(product_id),
+    quantity INT NOT NULL CHECK (quantity >= 0),
+    PRIMARY KEY (request_id, product_id)
+);
+
+-- ========================
+-- IdempotencyKey (ผลลัพธ์ของ request ที่ส่ง Idempotency-Key มา สำหรับตอบซ้ำเมื่อ client retry)
+-- ========================
+CREATE TABLE IdempotencyKey (
+    staff_id VARCHAR(20) NOT NULL,
+    idem_key VARCHAR(100) NOT NULL,
+    method VARCHAR(10) NOT NULL,
+    path VARCHAR(200) NOT NULL,
+    request_hash VARCHAR(64),
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    status INT,
+    content_type VARCHAR(100),
+    body BYTEA,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (staff_id, idem_key)
+);
+CREATE INDEX idx_idempotencykey_created ON IdempotencyKey(created_at);
+
+-- ========================
+-- StockDailyRollup / StockDailyStaffRollup (ยอดเคลื่อนไหวรายวันที่รวมไว้ล่วงหน้าสำหรับรายงาน)
+-- อัปเดตพร้อมการบันทึก StockTransaction; ข้อมูลเดิมสร้างด้วย POST /reports/rollups/rebuild
+-- ========================
+CREATE TABLE StockDailyRollup (
+    day DATE NOT NULL,
+    product_id VARCHAR(20) REFERENCES Product(product_id) NOT NULL,
+    type VARCHAR(10) NOT NULL,
+    quantity BIGINT NOT NULL DEFAULT 0,
+    transaction_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, product_id, type)
+);
+CREATE INDEX idx_stockdailyrollup_product_day ON StockDailyRollup(product_id, day);
+
+CREATE TABLE StockDailyStaffRollup (
+    day DATE NOT NULL,
     staff_id VARCHAR(20) REFERENCES Staff(staff_id) NOT NULL,
-    description TEXT
-);
\ No newline at end of file
+    type VARCHAR(10) NOT NULL,
+    quantity BIGINT NOT NULL DEFAULT 0,
+    transaction_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, staff_id, type)
+);
+
+-- ฐานข้อมูลที่สร้างจาก schema รุ่นก่อนหน้า: รัน db/upgrade.sql แทนไฟล์นี้
@@ -0,0 +1,115 @@
+package com.inv.repo;
+
+import com.inv.model.PageResult;
+import com.inv.model.Product;
+import com.inv.util.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// SQL ที่ KeysetPager สร้าง และ cursor ของหน้าถัดไป (ใช้ JdbcTemplate ที่จำ query ไว้แทน database)
+class KeysetPagerTests {
+
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        String sql;
+        Object[] args;
+        List<?> rows = List.of();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            this.sql = sql;
+            this.args = args;
+            return new ArrayList<>((List<T>) rows);
+        }
+    }
+
+    private final KeysetPager<Product> pager = new KeysetPager<Product>("product", "product_id", Product::getProductId, (rs, n) -> null, "name")
+            .sortKey("name", "product_name", v -> v, Product::getProductName);
+
+    private RecordingJdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new RecordingJdbcTemplate();
+    }
+
+    @Test
+    void firstPageUsesDefaultSortAndFetchesOneExtraRow() {
+        pager.page(jdbc, null, null, 2);
+
+        assertThat(jdbc.sql).isEqualTo("SELECT * FROM product ORDER BY product_name ASC, product_id ASC LIMIT ?");
+        assertThat(jdbc.args).containsExactly(3);
+    }
+
+    @Test
+    void returnsNextCursorOnlyWhenThereAreMoreRows() {
+        jdbc.rows = List.of(product("P1", "A"), product("P2", "B"), product("P3", "C"));
+        PageResult<Product> page = pager.page(jdbc, "name", null, 2);
+
+        assertThat(page.getItems()).extracting(Product::getProductId).containsExactly("P1", "P2");
+        assertThat(KeysetCursor.decode(page.getNextCursor(), 3)).containsExactly("name", "B", "P2");
+
+        jdbc.rows = List.of(product("P3", "C"));
+        assertThat(pager.page(jdbc, "name", page.getNextCursor(), 2).getNextCursor()).isNull();
+    }
+
+    @Test
+    void nextPageSeeksPastTheLastRowWithRowComparison() {
+        pager.page(jdbc, "name", KeysetCursor.encode("name", "B", "P2"), 2);
+        assertThat(jdbc.sql).isEqualTo("SELECT * FROM product WHERE (product_name, product_id) > (?, ?) " +
+                "ORDER BY product_name ASC, product_id ASC LIMIT ?");
+        assertThat(jdbc.args).containsExactly("B", "P2", 3);
+
+        pager.page(jdbc, "-name", KeysetCursor.encode("-name", "B", "P2"), 2);
+        assertThat(jdbc.sql).isEqualTo("SELECT * FROM product WHERE (product_name, product_id) < (?, ?) " +
+                "ORDER BY product_name DESC, product_id DESC LIMIT ?");
+    }
+
+    @Test
+    void sortByIdUsesOnlyThePrimaryKey() {
+        pager.page(jdbc, "-id", KeysetCursor.encode("-id", "P2", "P2"), 10);
+
+        assertThat(jdbc.sql).isEqualTo("SELECT * FROM product WHERE product_id < ? ORDER BY product_id DESC LIMIT ?");
+        assertThat(jdbc.args).containsExactly("P2", 11);
+    }
+
+    @Test
+    void rejectsUnknownSort() {
+        assertThatThrownBy(() -> pager.page(jdbc, "price", null, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("id, name");
+    }
+
+    @Test
+    void rejectsCursorFromAnotherSort() {
+        String cursor = KeysetCursor.encode("name", "B", "P2");
+
+        assertThatThrownBy(() -> pager.page(jdbc, "-name", cursor, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsCursorValueTheParserCannotRead() {
+        KeysetPager<Product> byPrice = new KeysetPager<Product>("product", "product_id", Product::getProductId, (rs, n) -> null, "price")
+                .sortKey("price", "price_per_unit", BigDecimal::new, p -> p.getPricePerUnit().toPlainString());
+
+        assertThatThrownBy(() -> byPrice.page(jdbc, "price", KeysetCursor.encode("price", "abc", "P1"), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("cursor ไม่ถูกต้อง");
+    }
+
+    private static Product product(String id, String name) {
+        Product p = new Product();
+        p.setProductId(id);
+        p.setProductName(name);
+        return p;
+    }
+}
@@ -0,0 +1,128 @@
+package com.inv.service;
+
+import com.inv.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// การทำข้อความให้อยู่ในรูปเดียวกัน และการค้น/จัดลำดับจาก n-gram index
+class ProductSearchIndexTests {
+
+    private final List<Product> products = new ArrayList<>();
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        ProductCatalog catalog = mock(ProductCatalog.class);
+        when(catalog.getAll()).thenReturn(products);
+        when(catalog.get(anyString())).thenAnswer(inv -> products.stream()
+                .filter(p -> p.getProductId().equals(inv.getArgument(0)))
+                .findFirst().orElse(null));
+        index = new ProductSearchIndex();
+        ReflectionTestUtils.setField(index, "productCatalog", catalog);
+    }
+
+    @Test
+    void normalizeLowercasesAndFoldsFullWidthCharacters() {
+        assertThat(ProductSearchIndex.normalize("ＡＢＣ１２ Cola")).isEqualTo("abc12 cola");
+    }
+
+    @Test
+    void normalizeCollapsesPunctuationAndTrims() {
+        assertThat(ProductSearchIndex.normalize("  Coke, (1.5L)!! ")).isEqualTo("coke 1 5l");
+        assertThat(ProductSearchIndex.normalize(null)).isEmpty();
+        assertThat(ProductSearchIndex.normalize("---")).isEmpty();
+    }
+
+    @Test
+    void normalizeKeepsThaiVowelAndToneMarks() {
+        assertThat(ProductSearchIndex.normalize("ดื่ม ตราช้าง")).isEqualTo("ดื่ม ตราช้าง");
+        // NFKC แยกสระอำ (U+0E33) เป็นนิคหิต + สระอา: พิมพ์แบบใดก็ค้นเจอเหมือนกัน
+        assertThat(ProductSearchIndex.normalize("น้ำ")).isEqualTo(ProductSearchIndex.normalize("น\u0E49\u0E4D\u0E32"));
+    }
+
+    @Test
+    void findsThaiSubstringWithoutWordBoundaries() {
+        add("P1", "น้ำดื่มตราช้าง", null, null);
+        add("P2", "น้ำมันพืช", null, null);
+
+        assertThat(ids(index.search("ดื่ม", 10))).containsExactly("P1");
+        assertThat(ids(index.search("น้ำ", 10))).containsExactlyInAnyOrder("P1", "P2");
+        assertThat(ids(index.search("น\u0E49\u0E4D\u0E32มัน", 10))).containsExactly("P2");
+    }
+
+    @Test
+    void ranksExactThenPrefixThenWordThenSubstringThenSupplierThenDescription() {
+        add("SUBSTRING", "xcola", null, null);
+        add("DESCRIPTION", "water", "cola flavour", null);
+        add("EXACT", "cola", null, null);
+        add("WORD", "diet cola", null, null);
+        add("SUPPLIER", "soda", null, "SUP-COLA");
+        add("PREFIX", "cola zero", null, null);
+
+        assertThat(ids(index.search("Cola", 10)))
+                .containsExactly("EXACT", "PREFIX", "WORD", "SUBSTRING", "SUPPLIER", "DESCRIPTION");
+    }
+
+    @Test
+    void everyTermMustMatch() {
+        add("P1", "coca cola", null, null);
+        add("P2", "pepsi cola", null, null);
+
+        assertThat(ids(index.search("cola coca", 10))).containsExactly("P1");
+        assertThat(ids(index.search("cola sprite", 10))).isEmpty();
+    }
+
+    @Test
+    void keepsOnlyTheTopResults() {
+        add("P1", "cola a", null, null);
+        add("P2", "cola", null, null);
+        add("P3", "diet cola", null, null);
+
+        assertThat(ids(index.search("cola", 2))).containsExactly("P2", "P1");
+    }
+
+    @Test
+    void blankQueryReturnsNothing() {
+        add("P1", "cola", null, null);
+
+        assertThat(index.search(" !? ", 10)).isEmpty();
+    }
+
+    @Test
+    void addedProductIsSearchableWithoutRebuild() {
+        add("P1", "cola", null, null);
+        assertThat(index.search("cola", 10)).hasSize(1);
+
+        Product sprite = product("P2", "sprite", null, null);
+        products.add(sprite);
+        index.add(sprite);
+
+        assertThat(ids(index.search("sprite", 10))).containsExactly("P2");
+    }
+
+    private void add(String id, String name, String description, String supplierId) {
+        products.add(product(id, name, description, supplierId));
+    }
+
+    private static Product product(String id, String name, String description, String supplierId) {
+        Product p = new Product();
+        p.setProductId(id);
+        p.setProductName(name);
+        p.setDescription(description);
+        p.setSupplierId(supplierId);
+        return p;
+    }
+
+    private static List<String> ids(List<Product> results) {
+        return results.stream().map(Product::getProductId).toList();
+    }
+}
@@ -0,0 +1,102 @@
+package com.inv.service;
+
+import com.inv.event.StockTransactionsRecordedEvent;
+import com.inv.model.LowStockItem;
+import com.inv.model.StockTransaction;
+import com.inv.repo.DbSnapshot;
+import com.inv.repo.ProductRepository;
+import com.inv.repo.StockTransactionRepository;
+import com.inv.repo.SupplierRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// การโหลดยอดเบิกจาก ledger ด้วย snapshot: รายการ OUT ที่ commit ระหว่างโหลดต้องไม่หายและไม่ถูกนับซ้ำ
+class ReorderEngineTests {
+
+    private ReorderEngine engine;
+    private ProductRepository productRepository;
+    // เรียกระหว่างอ่านยอดรายวัน เพื่อจำลอง commit ที่เกิดระหว่างโหลด
+    private Runnable duringLoad = () -> { };
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("300:302:"));
+        when(productRepository.findAllSupplierIds()).thenReturn(Map.of());
+        StockTransactionRepository stockTransactionRepository = mock(StockTransactionRepository.class);
+        doAnswer(inv -> {
+            StockTransactionRepository.DailyTotalHandler handler = inv.getArgument(2);
+            handler.accept("P1", LocalDate.now(), 28);
+            duringLoad.run();
+            return null;
+        }).when(stockTransactionRepository).forEachDailyTotal(eq("OUT"), any(LocalDate.class), any());
+        SupplierRepository supplierRepository = mock(SupplierRepository.class);
+        when(supplierRepository.findLeadTimes()).thenReturn(Map.of());
+        ReservationEngine reservationEngine = mock(ReservationEngine.class);
+        when(reservationEngine.getAvailable(anyString())).thenReturn(15);
+
+        engine = new ReorderEngine();
+        ReflectionTestUtils.setField(engine, "stockTransactionRepository", stockTransactionRepository);
+        ReflectionTestUtils.setField(engine, "productRepository", productRepository);
+        ReflectionTestUtils.setField(engine, "supplierRepository", supplierRepository);
+        ReflectionTestUtils.setField(engine, "reservationEngine", reservationEngine);
+        ReflectionTestUtils.setField(engine, "productCatalog", mock(ProductCatalog.class));
+        ReflectionTestUtils.setField(engine, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(engine, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(engine, "windowDays", 28);
+        ReflectionTestUtils.setField(engine, "safetyDays", 3);
+        ReflectionTestUtils.setField(engine, "defaultLeadTimeDays", 7);
+    }
+
+    @Test
+    void loadReplaysOnlyOutsCommittedAfterItsSnapshot() {
+        duringLoad = () -> {
+            // 299 commit ก่อน snapshot: อยู่ในยอดรายวันที่อ่านได้แล้ว
+            engine.onTransactionsRecorded(out("P1", 28, 299));
+            // 305 เริ่มหลัง snapshot: ต้องบวกเพิ่มจากยอดที่อ่านได้
+            engine.onTransactionsRecorded(out("P1", 28, 305));
+        };
+
+        List<LowStockItem> items = engine.getLowStock();
+
+        // (28 + 28) / 28 วัน = 2 ต่อวัน, จุดสั่งซื้อ 2 x (7 + 3) = 20 >= available 15
+        assertThat(items).extracting(LowStockItem::getProductId).containsExactly("P1");
+        assertThat(items.get(0).getDailyUsage()).isEqualTo(2.0);
+    }
+
+    @Test
+    void outAlreadyInTheLoadSnapshotIsIgnored() {
+        assertThat(engine.getLowStock()).isEmpty();
+
+        engine.onTransactionsRecorded(out("P1", 28, 301));
+        engine.evaluateChanged();
+        assertThat(engine.getLowStock()).isEmpty();
+
+        engine.onTransactionsRecorded(out("P1", 28, 400));
+        engine.evaluateChanged();
+        assertThat(engine.getLowStock()).extracting(LowStockItem::getDailyUsage).containsExactly(2.0);
+    }
+
+    private static StockTransactionsRecordedEvent out(String productId, int quantity, long txId) {
+        StockTransaction t = new StockTransaction();
+        t.setProductId(productId);
+        t.setType("OUT");
+        t.setQuantity(quantity);
+        return new StockTransactionsRecordedEvent(List.of(t), txId);
+    }
+}
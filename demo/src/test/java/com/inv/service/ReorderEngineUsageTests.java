@@ -0,0 +1,90 @@
+package com.inv.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// ring buffer ยอดเบิกรายวันของ ReorderEngine: ผลรวมต้องเท่ากับยอดของวันที่อยู่ใน window เสมอ
+class ReorderEngineUsageTests {
+
+    private static final long TODAY = 20_000;
+
+    @Test
+    void sumsQuantitiesWithinTheWindow() {
+        ReorderEngine.Usage usage = new ReorderEngine.Usage(7, TODAY);
+
+        usage.add(TODAY, 5);
+        usage.add(TODAY, 3);
+        usage.add(TODAY - 6, 2);
+
+        assertThat(usage.total).isEqualTo(10);
+    }
+
+    @Test
+    void ignoresDaysOlderThanTheWindow() {
+        ReorderEngine.Usage usage = new ReorderEngine.Usage(7, TODAY);
+
+        usage.add(TODAY - 7, 100);
+
+        assertThat(usage.total).isZero();
+    }
+
+    @Test
+    void advancingDropsDaysThatLeaveTheWindow() {
+        ReorderEngine.Usage usage = new ReorderEngine.Usage(7, TODAY);
+        usage.add(TODAY - 2, 4);
+        usage.add(TODAY, 6);
+
+        usage.advanceTo(TODAY + 4);
+        assertThat(usage.total).isEqualTo(10);
+
+        usage.advanceTo(TODAY + 5); // TODAY - 2 หลุดจาก window
+        assertThat(usage.total).isEqualTo(6);
+
+        usage.advanceTo(TODAY + 7); // TODAY หลุดจาก window
+        assertThat(usage.total).isZero();
+    }
+
+    @Test
+    void gapLongerThanTheWindowClearsEverything() {
+        ReorderEngine.Usage usage = new ReorderEngine.Usage(7, TODAY);
+        for (int d = 0; d < 7; d++) {
+            usage.add(TODAY - d, 1);
+        }
+
+        usage.add(TODAY + 100, 2);
+
+        assertThat(usage.total).isEqualTo(2);
+        assertThat(usage.lastDay).isEqualTo(TODAY + 100);
+    }
+
+    @Test
+    void addingAnEarlierDayDoesNotMoveTheWindowBack() {
+        ReorderEngine.Usage usage = new ReorderEngine.Usage(7, TODAY);
+        usage.add(TODAY + 3, 1);
+
+        usage.add(TODAY + 1, 2);
+        usage.advanceTo(TODAY);
+
+        assertThat(usage.lastDay).isEqualTo(TODAY + 3);
+        assertThat(usage.total).isEqualTo(3);
+    }
+
+    @Test
+    void totalMatchesRecomputedWindowOverManyDays() {
+        int window = 28;
+        ReorderEngine.Usage usage = new ReorderEngine.Usage(window, TODAY);
+        int[] byDay = new int[400];
+        for (int d = 0; d < byDay.length; d++) {
+            int qty = (d * 7) % 11;
+            byDay[d] = qty;
+            usage.add(TODAY + d, qty);
+
+            long expected = 0;
+            for (int k = Math.max(0, d - window + 1); k <= d; k++) {
+                expected += byDay[k];
+            }
+            assertThat(usage.total).isEqualTo(expected);
+        }
+    }
+}
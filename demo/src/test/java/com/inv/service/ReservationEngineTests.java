@@ -0,0 +1,226 @@
+package com.inv.service;
+
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.repo.DbSnapshot;
+import com.inv.repo.ProductRepository;
+import com.inv.repo.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// ยอดจองในหน่วยความจำ: all-or-nothing, ไม่จองเกิน, ไม่บวกยอดที่ snapshot ตอนโหลดเห็นแล้วซ้ำ และไม่ทำการจองที่ยังไม่ commit หาย
+class ReservationEngineTests {
+
+    private ProductRepository productRepository;
+    private ReservationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        StockReservationRepository reservationRepository = mock(StockReservationRepository.class);
+        // xid < 100 commit ก่อน snapshot, 102 ยังไม่ commit ตอนอ่าน, ตั้งแต่ 105 เริ่มหลังอ่าน
+        when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("100:105:102"));
+        when(productRepository.findAllQuantities()).thenReturn(Map.of("P1", 10, "P2", 5));
+        when(reservationRepository.findAllByRequest()).thenReturn(Map.of("R0", Map.of("P1", 3)));
+
+        engine = new ReservationEngine();
+        ReflectionTestUtils.setField(engine, "productRepository", productRepository);
+        ReflectionTestUtils.setField(engine, "reservationRepository", reservationRepository);
+        ReflectionTestUtils.setField(engine, "transactionManager", mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void loadsOnHandAndReservationsFromDatabase() {
+        assertThat(engine.getOnHand("P1")).isEqualTo(10);
+        assertThat(engine.getReserved("P1")).isEqualTo(3);
+        assertThat(engine.getAvailable("P1")).isEqualTo(7);
+        assertThat(engine.getAvailable("P2")).isEqualTo(5);
+    }
+
+    @Test
+    void reserveIsAllOrNothing() {
+        List<String> shortages = engine.reserve("R1", Map.of("P1", 8, "P2", 2), 200);
+
+        assertThat(shortages).containsExactly("P1");
+        assertThat(engine.getReserved("P1")).isEqualTo(3);
+        assertThat(engine.getReserved("P2")).isZero();
+    }
+
+    @Test
+    void reserveDoesNotUseStockReservedForOthers() {
+        assertThat(engine.reserve("R1", Map.of("P1", 7), 200)).isEmpty();
+        assertThat(engine.getAvailable("P1")).isZero();
+
+        assertThat(engine.reserve("R2", Map.of("P1", 1), 200)).containsExactly("P1");
+    }
+
+    @Test
+    void canFulfillCountsOnlyTheRequestsOwnReservation() {
+        engine.reserve("R1", Map.of("P1", 7), 200);
+
+        assertThat(engine.canFulfill("R1", "P1", 7)).isTrue();
+        assertThat(engine.canFulfill("R1", "P1", 8)).isFalse();
+        assertThat(engine.canFulfill("R2", "P1", 1)).isFalse();
+    }
+
+    @Test
+    void consumeReleasesAtMostTheOwnReservation() {
+        engine.reserve("R1", Map.of("P1", 4), 200);
+
+        engine.consume("R1", "P1", 10, 200);
+
+        assertThat(engine.getReserved("P1")).isEqualTo(3);
+    }
+
+    @Test
+    void releaseReturnsRemainingReservation() {
+        engine.getReserved("P1"); // โหลด
+        engine.release("R0", 200);
+
+        assertThat(engine.getReserved("P1")).isZero();
+        assertThat(engine.getAvailable("P1")).isEqualTo(10);
+    }
+
+    @Test
+    void stockChangesSeenByTheLoadSnapshotAreNotAppliedTwice() {
+        engine.getOnHand("P1"); // โหลด
+
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P1", 5, 99));   // commit ก่อน snapshot
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P1", 5, 101));  // commit ก่อน snapshot
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P1", -2, 102)); // กำลังทำงานตอน snapshot
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P1", 4, 110));  // หลัง snapshot
+
+        assertThat(engine.getOnHand("P1")).isEqualTo(12);
+    }
+
+    @Test
+    void consumeSeenByTheLoadSnapshotIsIgnored() {
+        engine.getOnHand("P1");
+
+        engine.consume("R0", "P1", 3, 50);
+
+        assertThat(engine.getReserved("P1")).isEqualTo(3);
+    }
+
+    @Test
+    void resyncReplacesDriftedValues() {
+        engine.getOnHand("P2");
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P2", 100, 200));
+        assertThat(engine.getOnHand("P2")).isEqualTo(105);
+
+        when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("300:300:"));
+        engine.resync();
+
+        assertThat(engine.getOnHand("P2")).isEqualTo(5);
+    }
+
+    @Test
+    void releaseSeenByTheLoadSnapshotIsIgnored() {
+        engine.getOnHand("P1");
+
+        engine.release("R0", 50);
+
+        assertThat(engine.getReserved("P1")).isEqualTo(3);
+    }
+
+    @Test
+    void rolledBackReservationIsReturned() {
+        engine.getOnHand("P1");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(engine.reserve("R1", Map.of("P1", 5), 200)).isEmpty();
+            assertThat(engine.getReserved("P1")).isEqualTo(8);
+
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(engine.getReserved("P1")).isEqualTo(3);
+    }
+
+    @Test
+    void openReservationSurvivesResyncAndCommitsAfterIt() {
+        engine.getOnHand("P1");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.reserve("R1", Map.of("P1", 5), 200);
+
+            // snapshot ใหม่ยังไม่เห็นการจองของ xid 200 ที่ยังไม่ commit
+            when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("200:210:200"));
+            engine.resync();
+            assertThat(engine.getReserved("P1")).isEqualTo(8);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(engine.getReserved("P1")).isEqualTo(8);
+        engine.release("R1", 220);
+        assertThat(engine.getReserved("P1")).isEqualTo(3);
+    }
+
+    @Test
+    void cancelledReservationIsNotReturnedAgainOnRollback() {
+        engine.getOnHand("P1");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.reserve("R1", Map.of("P1", 5), 200);
+            engine.cancel("R1");
+            assertThat(engine.getReserved("P1")).isEqualTo(3);
+
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(engine.getReserved("P1")).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        engine.getOnHand("P2");
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String requestId = "R-" + i;
+                futures.add(pool.submit(() -> {
+                    if (engine.reserve(requestId, Map.of("P2", 1, "P1", 0), 200).isEmpty()) {
+                        granted.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(granted.get()).isEqualTo(5);
+        assertThat(engine.getAvailable("P2")).isZero();
+    }
+
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(status));
+    }
+}
@@ -0,0 +1,164 @@
+package com.inv.service;
+
+import com.inv.event.ProductPriceChangedEvent;
+import com.inv.event.StockLevelChangedEvent;
+import com.inv.model.InventoryValuation;
+import com.inv.model.Product;
+import com.inv.repo.DbSnapshot;
+import com.inv.repo.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// มูลค่าคงคลังแบบ running total และการ reconcile ที่ไม่บวกการเปลี่ยนแปลงที่อ่านจาก database แล้วซ้ำ
+class ValuationEngineTests {
+
+    private final List<Product> rows = new ArrayList<>();
+    private ProductRepository productRepository;
+    private ValuationEngine engine;
+    // เรียกระหว่าง stream แถวสินค้า เพื่อจำลอง commit ที่เกิดระหว่าง reconcile
+    private Runnable duringStream = () -> { };
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        rows.add(product("P1", "S1", 10, "2.50"));
+        rows.add(product("P2", "S1", 4, "1.00"));
+        rows.add(product("P3", null, 1, "100.00"));
+
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("100:100:"));
+        doAnswer(inv -> {
+            Consumer<Product> consumer = inv.getArgument(0);
+            for (int i = 0; i < rows.size(); i++) {
+                consumer.accept(rows.get(i));
+                if (i == 0) {
+                    duringStream.run();
+                }
+            }
+            return null;
+        }).when(productRepository).streamValuationRows(any(Consumer.class));
+
+        engine = new ValuationEngine();
+        ReflectionTestUtils.setField(engine, "productRepository", productRepository);
+        ReflectionTestUtils.setField(engine, "transactionManager", mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void totalsBySupplierSortedByValue() {
+        InventoryValuation valuation = engine.getValuation();
+
+        assertThat(valuation.getTotalValue()).isEqualByComparingTo("129.00");
+        assertThat(valuation.getSuppliers()).extracting(InventoryValuation.SupplierValue::getSupplierId)
+                .containsExactly(null, "S1");
+        assertThat(valuation.getSuppliers().get(1).getValue()).isEqualByComparingTo("29.00");
+        assertThat(valuation.getReconciledAt()).isNotNull();
+    }
+
+    @Test
+    void stockChangeAddsDeltaTimesPrice() {
+        engine.getValuation();
+
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P1", -4, 200));
+
+        assertThat(engine.getValuation().getTotalValue()).isEqualByComparingTo("119.00");
+    }
+
+    @Test
+    void priceChangeRevaluesHeldQuantity() {
+        engine.getValuation();
+
+        engine.onPriceChanged(new ProductPriceChangedEvent("P2", new BigDecimal("1.25")));
+
+        assertThat(engine.getValuation().getTotalValue()).isEqualByComparingTo("130.00");
+    }
+
+    @Test
+    void stockChangeForUnknownProductLoadsItFromDatabase() {
+        engine.getValuation();
+        // สินค้าใหม่: แถวที่อ่านได้เห็น commit 200 แล้ว (0 + 3)
+        when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("201:201:"));
+        when(productRepository.findById("P4")).thenReturn(product("P4", "S2", 3, "10.00"));
+
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P4", 3, 200));
+
+        InventoryValuation valuation = engine.getValuation();
+        assertThat(valuation.getTotalValue()).isEqualByComparingTo("159.00");
+        assertThat(valuation.getSuppliers().get(0).getSupplierId()).isNull();
+        assertThat(valuation.getSuppliers()).extracting(InventoryValuation.SupplierValue::getSupplierId).contains("S2");
+    }
+
+    @Test
+    void unknownProductSkipsOnlyChangesItsRowSnapshotAlreadySaw() {
+        engine.getValuation();
+        // แถวของ P4 อ่านหลัง 200 และ 210 commit แล้ว แต่ listener ของ 210 มาถึงหลังการอ่าน
+        when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("211:211:"));
+        when(productRepository.findById("P4")).thenReturn(product("P4", "S2", 5, "10.00"));
+
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P4", 3, 200));
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P4", 2, 210));
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P4", -1, 220));
+
+        // 129 + (5 - 1) x 10.00
+        assertThat(engine.getValuation().getTotalValue()).isEqualByComparingTo("169.00");
+    }
+
+    @Test
+    void changeAlreadyInTheLoadSnapshotIsIgnored() {
+        engine.getValuation();
+
+        engine.onStockLevelChanged(new StockLevelChangedEvent("P1", 10, 99));
+
+        assertThat(engine.getValuation().getTotalValue()).isEqualByComparingTo("129.00");
+    }
+
+    @Test
+    void reconcileReplaysOnlyCommitsAfterItsSnapshot() {
+        engine.getValuation();
+        when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("300:302:"));
+        duringStream = () -> {
+            // 299 commit ก่อน snapshot: แถวที่ stream ได้มี +2 ของ P1 อยู่แล้ว
+            engine.onStockLevelChanged(new StockLevelChangedEvent("P1", 2, 299));
+            // 305 เริ่มหลัง snapshot: ต้องนำไปใช้กับผลที่อ่านได้
+            engine.onStockLevelChanged(new StockLevelChangedEvent("P2", 1, 305));
+        };
+        rows.set(0, product("P1", "S1", 12, "2.50"));
+
+        engine.reconcile();
+
+        // P1 12 x 2.50 + P2 5 x 1.00 + P3 100
+        assertThat(engine.getValuation().getTotalValue()).isEqualByComparingTo("135.00");
+    }
+
+    @Test
+    void reconcileCorrectsDrift() {
+        engine.getValuation();
+        rows.set(2, product("P3", null, 2, "100.00"));
+        when(productRepository.currentSnapshot()).thenReturn(DbSnapshot.parse("300:300:"));
+
+        engine.reconcile();
+
+        assertThat(engine.getValuation().getTotalValue()).isEqualByComparingTo("229.00");
+    }
+
+    private static Product product(String id, String supplierId, int quantity, String price) {
+        Product p = new Product();
+        p.setProductId(id);
+        p.setSupplierId(supplierId);
+        p.setQuantity(quantity);
+        p.setPricePerUnit(new BigDecimal(price));
+        return p;
+    }
+}
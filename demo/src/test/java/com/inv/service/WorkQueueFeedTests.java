@@ -0,0 +1,51 @@
+package com.inv.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import static com.inv.event.WorkQueueChangedEvent.APPROVED_REQUESTS;
+import static com.inv.event.WorkQueueChangedEvent.LOW_STOCK;
+import static com.inv.event.WorkQueueChangedEvent.PENDING_REQUESTS;
+import static com.inv.event.WorkQueueChangedEvent.READY_TO_CLOSE_ORDERS;
+import static com.inv.event.WorkQueueChangedEvent.READY_TO_CLOSE_REQUESTS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// คิวที่ส่งให้แต่ละ role ต้องตรงกับกฎของ SecurityConfig
+@SpringBootTest
+class WorkQueueFeedTests {
+
+    @Autowired
+    private WorkQueueFeed workQueueFeed;
+
+    private static Authentication staff(String role) {
+        return new UsernamePasswordAuthenticationToken("STF-1", null, AuthorityUtils.createAuthorityList(role));
+    }
+
+    @Test
+    void foremanSeesPendingAndApproved() {
+        assertThat(workQueueFeed.queuesFor(staff("ROLE_FOREMAN")))
+                .containsExactlyInAnyOrder(PENDING_REQUESTS, APPROVED_REQUESTS);
+    }
+
+    @Test
+    void warehouseSeesItsQueues() {
+        assertThat(workQueueFeed.queuesFor(staff("ROLE_WAREHOUSE")))
+                .containsExactlyInAnyOrder(APPROVED_REQUESTS, READY_TO_CLOSE_REQUESTS, LOW_STOCK);
+    }
+
+    @Test
+    void adminDoesNotSeeForemanOrSalesQueues() {
+        assertThat(workQueueFeed.queuesFor(staff("ROLE_ADMIN")))
+                .containsExactlyInAnyOrder(APPROVED_REQUESTS, LOW_STOCK);
+    }
+
+    @Test
+    void salesSeesOrdersToClose() {
+        assertThat(workQueueFeed.queuesFor(staff("ROLE_SALES")))
+                .containsExactlyInAnyOrder(APPROVED_REQUESTS, READY_TO_CLOSE_ORDERS);
+    }
+}
@@ -0,0 +1,75 @@
+package com.inv.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// รูปแบบ ID, การเรียงตามเวลา และความไม่ซ้ำเมื่อเรียกพร้อมกันหลาย thread
+class IdGeneratorTests {
+
+    private static final int PREFIX_LENGTH = "PROD-".length();
+
+    @Test
+    void idHasPrefixAndFixedLengthBase36Suffix() {
+        String id = new IdGenerator(1).next("PROD-");
+
+        assertThat(id).startsWith("PROD-").hasSize(18).matches("PROD-[0-9A-Z]{13}");
+    }
+
+    @Test
+    void idsIncreaseAsTextEvenWhenSequenceOverflows() {
+        IdGenerator generator = new IdGenerator(1);
+        // มากกว่า 4096 ID ต่อ ms ทำให้ต้องยืมเวลาของ ms ถัดไป
+        String previous = generator.next("ST-");
+        for (int i = 0; i < 20_000; i++) {
+            String next = generator.next("ST-");
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void nodeIdIsEncodedInEveryId() {
+        assertThat(node(new IdGenerator(5).next("PROD-"))).isEqualTo(5);
+        assertThat(node(new IdGenerator(1023).next("PROD-"))).isEqualTo(1023);
+        // เกิน 10 bits ถูกตัดเหลือเฉพาะ bits ล่าง
+        assertThat(node(new IdGenerator(1024 + 7).next("PROD-"))).isEqualTo(7);
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        IdGenerator generator = new IdGenerator(1);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ids.add(generator.next("CUS-"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(ids).hasSize(80_000);
+    }
+
+    private static long node(String id) {
+        long value = Long.parseLong(id.substring(PREFIX_LENGTH), 36);
+        return (value >>> 12) & 1023;
+    }
+}
@@ -0,0 +1,29 @@
+package com.inv.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTests {
+
+    @Test
+    void roundTripsValuesIncludingThaiAndEmpty() {
+        String cursor = KeysetCursor.encode("-name", "น้ำดื่ม 600 มล.", "");
+
+        assertThat(cursor).doesNotContain("=", "+", "/");
+        assertThat(KeysetCursor.decode(cursor, 3)).containsExactly("-name", "น้ำดื่ม 600 มล.", "");
+    }
+
+    @Test
+    void rejectsWrongNumberOfValues() {
+        String cursor = KeysetCursor.encode("name", "A", "PROD-1");
+
+        assertThatThrownBy(() -> KeysetCursor.decode(cursor, 2)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsInvalidBase64() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor!", 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+}